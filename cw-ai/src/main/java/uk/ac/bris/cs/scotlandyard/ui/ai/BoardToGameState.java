@@ -1,5 +1,7 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableMap;
@@ -15,23 +17,47 @@ import java.util.*;
 public class BoardToGameState implements Board.GameState {
 
     final Board board;
-    private Player mrX;
-    final List<Integer> possibleMrXLocations;
+    //Flattened copy of the game graph, shared by every state advanced from this one
+    final CompiledGraph graph;
+    private final Player mrX;
+    //Where the detectives think Mr X could be, only read while his location isn't known
+    private final MrXBelief belief;
     final ImmutableSet<Piece> remaining;
+    //The maps board was built from, read directly by ticketCount and detectiveLocation
+    //null when wrapping a board from outside the search
+    private final ImmutableMap<Detective, Integer> detectiveLocations;
+    private final ImmutableMap<Piece, ImmutableMap<Ticket, Integer>> tickets;
     final Visitor<Integer> destinationVisitor = new Move.FunctionalVisitor<>((x -> x.destination),(x -> x.destination2));
-
-    public BoardToGameState(Board board, ImmutableSet<Piece> remaining, Player mrX, List<Integer> possibleMrXLocations){
+    //Worked out the first time they are asked for, as most states in the game tree never need them
+    private final Supplier<ImmutableSet<Piece>> winner;
+    private final Supplier<ImmutableSet<Move>> availableMoves;
+
+    public BoardToGameState(Board board, CompiledGraph graph,
+                            ImmutableMap<Detective, Integer> detectiveLocations,
+                            ImmutableMap<Piece, ImmutableMap<Ticket, Integer>> tickets,
+                            ImmutableSet<Piece> remaining, Player mrX, MrXBelief belief,
+                            Supplier<ImmutableSet<Piece>> winner, Supplier<ImmutableSet<Move>> availableMoves){
         this.board = board;
+        this.graph = graph;
+        this.detectiveLocations = detectiveLocations;
+        this.tickets = tickets;
         this.remaining = remaining;
         this.mrX = mrX;
-        this.possibleMrXLocations = possibleMrXLocations;
+        this.belief = belief;
+        this.winner = Suppliers.memoize(winner);
+        this.availableMoves = Suppliers.memoize(availableMoves);
     }
 
-    public BoardToGameState(Board board, List<Piece> remaining, int mrXLocation){
+    public BoardToGameState(Board board, List<Piece> remaining, int mrXLocation, MrXBelief belief){
         this.board = board;
+        this.graph = CompiledGraph.of(board.getSetup().graph);
+        this.detectiveLocations = null;
+        this.tickets = null;
         this.remaining = ImmutableSet.copyOf(remaining);
         this.mrX = new Player(Piece.MrX.MRX, ImmutableMap.copyOf(ticketBoardToMap(Piece.MrX.MRX)), mrXLocation);
-        this.possibleMrXLocations = new ArrayList<>();
+        this.belief = belief;
+        this.winner = board::getWinner;
+        this.availableMoves = board::getAvailableMoves;
     }
 
     private ImmutableSet<Piece> detectiveWinners(){
@@ -65,9 +91,10 @@ public class BoardToGameState implements Board.GameState {
                                              Map<Piece, ImmutableMap<Ticket, Integer>> newTickets,
                                              Map<Detective, Integer> newLocations, Player newMrX){
         boolean areDetectivesStuck = true;
-        if(newRemaining.equals(ImmutableSet.of(Piece.MrX.MRX))){
+        if(newRemaining.equals(List.of(Piece.MrX.MRX))){
             if(board.getMrXTravelLog().size() == board.getSetup().rounds.size()) return ImmutableSet.of(Piece.MrX.MRX);
-            if(!isPlayerInGame(newMrX)) return detectiveWinners();
+            if(newMrX.location() == -1 ? createMrXMoves(newLocations).isEmpty() : !isPlayerInGame(newMrX))
+                return detectiveWinners();
         }
         for(Piece d : board.getPlayers()){
             if(d.isDetective()){
@@ -85,21 +112,27 @@ public class BoardToGameState implements Board.GameState {
 
     //Gets a list of SingleMove objects that player p can make
     private List<Move> createSingleMoves(Piece p, int location){
-        List<Move> moves = new ArrayList<>();
-        var graph = board.getSetup().graph;
         Player player = null;
         if(p.isMrX())
-            player = mrX;
+            player = mrX.at(location);
         else{
             player = new Player(p, ImmutableMap.copyOf(ticketBoardToMap(p)), location);
         }
+        return createSingleMoves(player);
+    }
 
+    private List<Move> createSingleMoves(Player player){
+        List<Move> moves = new ArrayList<>();
+        Piece p = player.piece();
         int u = player.location();
-        for(int v : graph.adjacentNodes(u)) { //Single moves can only reach neighbour of current node
-            var optionalEdge = graph.edgeValue(u, v);
-            if (optionalEdge.isPresent()) {
-                var edge = optionalEdge.get();
-                for (ScotlandYard.Transport tr : edge) { //Multiple methods of transport to each node
+        int[] neighbours = graph.neighbours(u);
+        byte[] transports = graph.transports(u);
+        for(int i = 0; i < neighbours.length; i++) { //Single moves can only reach neighbour of current node
+            int v = neighbours[i];
+            if (transports[i] != 0) {
+                for (ScotlandYard.Transport tr : ScotlandYard.Transport.values()) { //Multiple methods of transport to each node
+                    if ((transports[i] & CompiledGraph.transportBit(tr)) == 0)
+                        continue;
                     boolean isMoveAllowed = true;
                     Ticket t = tr.requiredTicket();
                     for (Piece d : board.getPlayers()) { //Detectives cannot overlap
@@ -133,9 +166,9 @@ public class BoardToGameState implements Board.GameState {
                 for(Move m : moves){
                     //m must be a single move (taken from getSingleMoves(), so can cast without worry)
                     int destination = ((SingleMove)m).destination;
-                    mrX = mrX.use(m.tickets()).at(destination); //Alter mrX to after performing single move
-                    List<Move> newMoves = new ArrayList<>(createSingleMoves(Piece.MrX.MRX, mrX.location())); //Get moves (new) mrX can perform
-                    mrX = mrX.give(m.tickets()).at(m.source()); //Revert mrX
+                    //mrX after performing single move, kept local as states can be searched from several threads
+                    Player movedMrX = mrX.use(m.tickets()).at(destination);
+                    List<Move> newMoves = new ArrayList<>(createSingleMoves(movedMrX)); //Get moves (new) mrX can perform
                     //Create new DoubleMove objects
                     for(Move n : newMoves){
                         dMoves.add(new DoubleMove(m.commencedBy(), m.source(), ((SingleMove)m).ticket,
@@ -148,16 +181,23 @@ public class BoardToGameState implements Board.GameState {
         return moves;
     }
 
+    //Gets Mr X's moves, from every node he could be on if his location isn't known
+    private List<Move> createMrXMoves(Map<Detective, Integer> newLocations){
+        if(mrX.location() != -1)
+            return createPlayerMoves(Piece.MrX.MRX, mrX.location());
+        List<Move> moves = new ArrayList<>();
+        for(int l = belief.next(0); l >= 0; l = belief.next(l + 1)){
+            //A detective who has moved onto l since shows Mr X isn't there
+            if(!newLocations.containsValue(l))
+                moves.addAll(createPlayerMoves(Piece.MrX.MRX, l));
+        }
+        return moves;
+    }
+
     public List<Move> createAvailableMoves(List<Piece> newRemaining, Map<Detective, Integer> newLocations, Player newMrX) {
         List<Move> moves = new ArrayList<>();
         if(newRemaining.contains(Piece.MrX.MRX)){ //If mrX's turn, get only their moves
-            if(mrX.location() == -1){
-                for(int l : possibleMrXLocations){
-                    moves.addAll(createPlayerMoves(Piece.MrX.MRX, l));
-                }
-            }
-            else
-                moves = createPlayerMoves(Piece.MrX.MRX, mrX.location());
+            moves = createMrXMoves(newLocations);
         }
         else{ //If detectives' turn, exclude mrX's moves
             for(Piece d : newRemaining){
@@ -267,7 +307,9 @@ public class BoardToGameState implements Board.GameState {
         //If no detectives left to move, return singleton list of mrX
         else{
             for(Piece p : remaining){
-                if(!p.equals(commencedBy))
+                //As in MyGameState, a detective who can't move now sits out the rest of the round
+                if(!p.equals(commencedBy) && p.isDetective()
+                        && !createSingleMoves(p, detectiveLocation((Detective)p)).isEmpty())
                     newRemaining = addDetective(p, newRemaining);
             }
             if(newRemaining.size() == 0){
@@ -277,39 +319,6 @@ public class BoardToGameState implements Board.GameState {
         return newRemaining;
     }
 
-    private List<Integer> getPossibleMrXLocations(Move m, int roundNumber){
-        List<Move> possibleMoves = new ArrayList<>();
-        //If there have been no reveal rounds up to this point, no information to go off
-        if(board.getSetup().rounds.subList(0, roundNumber).stream().noneMatch(x -> x))
-            return new ArrayList<>();
-        //If a reveal round, return only the current location
-        if(board.getSetup().rounds.get(roundNumber)){
-            return List.of(m.visit(destinationVisitor));
-        }
-        //Add all destinations reachable with the tickets used
-        for(int previousPossibleLocation : possibleMrXLocations){
-            List<Move> newMoves = createPlayerMoves(Piece.MrX.MRX, previousPossibleLocation);
-            for(Move n : newMoves){
-                if(n.tickets().equals(m.tickets()))
-                    possibleMoves.add(n);
-            }
-        }
-        //If a double move skips over a reveal round
-        if(m.visit(new FunctionalVisitor<>(x -> false, x -> true))){
-            if(board.getSetup().rounds.get(roundNumber - 1)){
-                //Fetches the first destination for a double move
-                Visitor<Integer> firstDestinationVisitor = new FunctionalVisitor<>(x -> 0, x -> x.destination1);
-                //Remove all moves where destination1 isn't the one revealed
-                possibleMoves.removeIf(x -> x.visit(firstDestinationVisitor) != m.visit(firstDestinationVisitor));
-            }
-        }
-        List<Integer> possibleLocations = new ArrayList<>();
-        for(Move n : possibleMoves)
-            possibleLocations.add(n.visit(destinationVisitor));
-
-        return possibleLocations;
-    }
-
     public GameState forceAdvance(Move move){
         final Piece commencedBy = move.commencedBy();
         final int destination = move.visit(destinationVisitor);
@@ -331,27 +340,65 @@ public class BoardToGameState implements Board.GameState {
                 }
             }
         }
-        List<Piece> newRemaining = updateRemaining(commencedBy);
-        List<Move> newMoves = createAvailableMoves(newRemaining, newDetectiveLocations, newMrX);
-        ImmutableSet<Piece> newWinner = createWinner(newRemaining, newTickets, newDetectiveLocations, newMrX);
-        List<Integer> newPossibleMrXLocations = new ArrayList<>(possibleMrXLocations);
-        if(commencedBy.isMrX())
-            newPossibleMrXLocations = getPossibleMrXLocations(move, newMrXTravelLog.size());
-
+        final List<Piece> newRemaining = updateRemaining(commencedBy);
+        final Map<Detective, Integer> finalDetectiveLocations = newDetectiveLocations;
+        final Map<Piece, ImmutableMap<Ticket, Integer>> finalTickets = newTickets;
+        final Player finalMrX = newMrX;
+
+        //Winner and moves are left empty here, the new state supplies them itself when asked
+        ImmutableMap<Detective, Integer> locationMap = ImmutableMap.copyOf(newDetectiveLocations);
+        ImmutableMap<Piece, ImmutableMap<Ticket, Integer>> ticketMap = ImmutableMap.copyOf(newTickets);
         Board newBoard = new ImmutableBoard(
-                board.getSetup(), ImmutableMap.copyOf(newDetectiveLocations),
-                ImmutableMap.copyOf(newTickets), ImmutableList.copyOf(newMrXTravelLog),
-                newWinner, ImmutableSet.copyOf(newMoves));
-        return new BoardToGameState(newBoard, ImmutableSet.copyOf(newRemaining), newMrX, newPossibleMrXLocations);
+                board.getSetup(), locationMap, ticketMap, ImmutableList.copyOf(newMrXTravelLog),
+                ImmutableSet.of(), ImmutableSet.of());
+        return new BoardToGameState(newBoard, graph, locationMap, ticketMap,
+                ImmutableSet.copyOf(newRemaining), newMrX, newMrX.location() == -1 ? belief : null,
+                () -> createWinner(newRemaining, finalTickets, finalDetectiveLocations, finalMrX),
+                () -> ImmutableSet.copyOf(createAvailableMoves(newRemaining, finalDetectiveLocations, finalMrX)));
     }
 
     @Nonnull @Override
     public GameState advance(Move move) {
-        if(!board.getAvailableMoves().contains(move))
+        if(!getAvailableMoves().contains(move))
             throw new IllegalArgumentException();
         return forceAdvance(move);
     }
 
+    /**
+     * @return Mr X's location, or -1 if it isn't known
+     */
+    int mrXLocation(){
+        return mrX.location();
+    }
+
+    /**
+     * Reads the location without going through an Optional, for scoring leaves without allocating
+     * @param detective a detective
+     * @return the detective's location, or -1 if it isn't in the game
+     */
+    int detectiveLocation(Detective detective){
+        if(detectiveLocations == null)
+            return board.getDetectiveLocation(detective).orElse(-1);
+        Integer location = detectiveLocations.get(detective);
+        return location == null ? -1 : location;
+    }
+
+    /**
+     * Reads the count without going through an Optional, for scoring leaves without allocating
+     * @param piece a player
+     * @param ticket a ticket
+     * @return how many of ticket piece has, 0 if it isn't in the game
+     */
+    int ticketCount(Piece piece, Ticket ticket){
+        if(tickets == null)
+            return board.getPlayerTickets(piece).map(t -> t.getCount(ticket)).orElse(0);
+        ImmutableMap<Ticket, Integer> counts = tickets.get(piece);
+        if(counts == null)
+            return 0;
+        Integer count = counts.get(ticket);
+        return count == null ? 0 : count;
+    }
+
     @Nonnull @Override
     public GameSetup getSetup() {
         return board.getSetup();
@@ -379,11 +426,11 @@ public class BoardToGameState implements Board.GameState {
 
     @Nonnull @Override
     public ImmutableSet<Piece> getWinner() {
-        return board.getWinner();
+        return winner.get();
     }
 
     @Nonnull @Override
     public ImmutableSet<Move> getAvailableMoves() {
-        return board.getAvailableMoves();
+        return availableMoves.get();
     }
 }
@@ -0,0 +1,103 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * When a move search has to stop.
+ * <br>
+ * The hard limit is when the search must give up, even part way through. The soft limit is when it shouldn't start
+ * anything new, such as another round of iterative deepening. Checking the hard limit is done on every node, so
+ * {@link System#nanoTime()} is only read once every so many checks. How many is tuned as the search runs, so the
+ * time is read about once every {@value #SAMPLE_NANOS} nanoseconds however long each node takes.
+ */
+public class Deadline {
+    //How often the time should be read
+    static final long SAMPLE_NANOS = 1_000_000;
+    //Most isExpired calls allowed between reads of the time
+    static final int MAX_INTERVAL = 1024;
+    //Fraction of the hard limit always given to the soft limit, the rest is shared between the rounds left
+    static final double BASE_FRACTION = 0.25;
+
+    private final long softDeadline;
+    private final long hardDeadline;
+    //Set by whoever called pickMove when the move is no longer wanted
+    private final AtomicBoolean terminate;
+    //isExpired calls between reads of the time, and calls since the last read
+    //Racy between threads, which only moves the next read of the time
+    private int interval = 1;
+    private int checks;
+    private long lastSample;
+    //Latches once the hard limit has passed or the search is cancelled
+    private volatile boolean expired;
+
+    /**
+     * @param softNanos nanoseconds from now until the soft limit
+     * @param hardNanos nanoseconds from now until the hard limit
+     * @param terminate isExpired returns true as soon as this is set
+     */
+    public Deadline(long softNanos, long hardNanos, AtomicBoolean terminate){
+        long now = System.nanoTime();
+        this.lastSample = now;
+        this.softDeadline = now + Long.min(softNanos, hardNanos);
+        this.hardDeadline = now + hardNanos;
+        this.terminate = terminate;
+    }
+
+    /**
+     * Gives more of the time limit to moves near the end of the game, where the search can see far enough ahead
+     * to decide it, and less to the early rounds
+     * @param setup the game's setup
+     * @param roundsPlayed how many rounds Mr X has already played
+     * @param timeLimit seconds the move must be picked within
+     * @param terminate isExpired returns true as soon as this is set
+     * @return a deadline for one move
+     */
+    public static Deadline forMove(GameSetup setup, int roundsPlayed, double timeLimit, AtomicBoolean terminate){
+        int roundsLeft = Integer.max(1, setup.rounds.size() - roundsPlayed);
+        long hardNanos = (long)(timeLimit * TimeUnit.SECONDS.toNanos(1));
+        double fraction = BASE_FRACTION + (1 - BASE_FRACTION) / roundsLeft;
+        return new Deadline((long)(hardNanos * fraction), hardNanos, terminate);
+    }
+
+    /**
+     * @return true once the hard limit has passed, or the search has been terminated or cancelled
+     */
+    public boolean isExpired(){
+        if(expired)
+            return true;
+        if(terminate.get()){
+            expired = true;
+            return true;
+        }
+        if(++checks < interval)
+            return false;
+        checks = 0;
+        long now = System.nanoTime();
+        if(now >= hardDeadline)
+            expired = true;
+        //Read the time less often if nodes are quick, more often if they are slow
+        else if(now - lastSample < SAMPLE_NANOS / 2 && interval < MAX_INTERVAL)
+            interval <<= 1;
+        else if(now - lastSample > SAMPLE_NANOS * 2 && interval > 1)
+            interval >>= 1;
+        lastSample = now;
+        return expired;
+    }
+
+    /**
+     * @return true once the soft limit has passed, or the hard limit has
+     */
+    public boolean isSoftExpired(){
+        return isExpired() || System.nanoTime() >= softDeadline;
+    }
+
+    /**
+     * makes isExpired return true from now on
+     */
+    public void cancel(){
+        expired = true;
+    }
+}
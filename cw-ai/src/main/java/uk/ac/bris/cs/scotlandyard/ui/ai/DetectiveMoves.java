@@ -0,0 +1,103 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Every way the detectives can move together in one round, generated one at a time.
+ * <br>
+ * Each combination takes one move from each detective's list. Combinations where two detectives end on the same
+ * node are skipped as soon as the clash is found, rather than after building the whole combination.
+ * Combinations come out in the order of the detectives' lists, so putting each detective's best moves first
+ * makes the best combinations come out first.
+ */
+public final class DetectiveMoves implements Iterable<List<Move>> {
+
+    private final Move[][] moves;
+    private final int[][] destinations;
+
+    /**
+     * @param playerMoves the single moves each detective can make, in the order they should be tried
+     */
+    public DetectiveMoves(List<List<Move>> playerMoves){
+        this.moves = new Move[playerMoves.size()][];
+        this.destinations = new int[playerMoves.size()][];
+        for(int i = 0; i < moves.length; i++){
+            moves[i] = playerMoves.get(i).toArray(new Move[0]);
+            destinations[i] = new int[moves[i].length];
+            for(int j = 0; j < moves[i].length; j++)
+                destinations[i][j] = moves[i][j].visit(MiniMaxAI.destinationVisitor);
+        }
+    }
+
+    @Nonnull @Override
+    public Iterator<List<Move>> iterator(){
+        return new JointMoveIterator();
+    }
+
+    //A depth first search over the detectives, one level per detective
+    private final class JointMoveIterator implements Iterator<List<Move>> {
+        //The index of the move chosen at each level, -1 if none chosen yet
+        private final int[] choices = new int[moves.length];
+        private int level;
+        private List<Move> next;
+
+        private JointMoveIterator(){
+            Arrays.fill(choices, -1);
+            level = moves.length == 0 ? -1 : 0;
+            next = findNext();
+        }
+
+        //Whether the move chosen at level ends on a node chosen by an earlier level
+        private boolean clashes(int level){
+            int destination = destinations[level][choices[level]];
+            for(int i = 0; i < level; i++){
+                if(destinations[i][choices[i]] == destination)
+                    return true;
+            }
+            return false;
+        }
+
+        private List<Move> findNext(){
+            while(level >= 0){
+                choices[level]++;
+                if(choices[level] == moves[level].length){
+                    //This level has run out, so go back to the one above
+                    choices[level] = -1;
+                    level--;
+                    continue;
+                }
+                if(clashes(level))
+                    continue;
+                if(level < moves.length - 1){
+                    level++;
+                    continue;
+                }
+                Move[] combination = new Move[moves.length];
+                for(int i = 0; i < moves.length; i++)
+                    combination[i] = moves[i][choices[i]];
+                return List.of(combination);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next != null;
+        }
+
+        @Override
+        public List<Move> next(){
+            if(next == null)
+                throw new NoSuchElementException();
+            List<Move> current = next;
+            next = findNext();
+            return current;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shortest distances (in moves, ignoring tickets) between every pair of nodes in a graph.
+ * <br>
+ * Every edge has the same weight, so the table is filled in with a breadth first search from each node.
+ * The result is held in one flat array of shorts, indexed by (source * nodeBound + destination).
+ * Tables are shared between every Ai using the same graph, and can be persisted to a memory mapped file
+ * by setting the {@value #CACHE_DIRECTORY_PROPERTY} system property to a directory.
+ */
+public final class DistanceTable {
+
+    /**
+     * System property naming a directory to keep distance tables in between runs
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY = "scotlandyard.distances.cache";
+
+    //Stored in the table for nodes that can't reach each other
+    private static final short UNREACHABLE = -1;
+
+    //Tables already worked out, keyed by the hash of their graph
+    private static final Map<Long, DistanceTable> tables = new ConcurrentHashMap<>();
+
+    //Either a heap buffer or a read-only mapped file, only ever read with absolute gets
+    private final ByteBuffer distances;
+    private final int nodeBound;
+
+    private DistanceTable(ByteBuffer distances, int nodeBound){
+        this.distances = distances;
+        this.nodeBound = nodeBound;
+    }
+
+    /**
+     * @param graph graph to find the distances on
+     * @return the distance table for graph, read from the cache directory if one is set
+     */
+    @Nonnull public static DistanceTable of(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph){
+        String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        return of(graph, directory == null ? null : Paths.get(directory));
+    }
+
+    /**
+     * @param graph graph to find the distances on
+     * @param cacheDirectory directory to read the table from or save it to, or null to keep it in memory only
+     * @return the distance table for graph
+     */
+    @Nonnull public static DistanceTable of(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph,
+                                           Path cacheDirectory){
+        CompiledGraph compiled = CompiledGraph.of(graph);
+        long hash = hash(compiled);
+        return tables.computeIfAbsent(hash, h -> {
+            if(cacheDirectory == null)
+                return new DistanceTable(ByteBuffer.wrap(runBreadthFirstSearch(compiled)), compiled.nodeBound());
+            try{
+                return load(compiled, cacheDirectory.resolve(String.format("distances-%016x.bin", h)));
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * @param source node to measure from
+     * @param destination node to measure to
+     * @return the fewest moves needed to get from source to destination, or Integer.MAX_VALUE if it can't be reached
+     */
+    public int distance(int source, int destination){
+        short d = distances.getShort((source * nodeBound + destination) * Short.BYTES);
+        return d == UNREACHABLE ? Integer.MAX_VALUE : d;
+    }
+
+    //Maps the table in from file, writing it out first if it isn't there yet
+    static DistanceTable load(CompiledGraph graph, Path file) throws IOException {
+        int nodeBound = graph.nodeBound();
+        long size = (long)nodeBound * nodeBound * Short.BYTES;
+        if(!Files.exists(file) || Files.size(file) != size){
+            Files.createDirectories(file.getParent());
+            //Write somewhere else first so another Ai never maps a half written table
+            Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temporary, runBreadthFirstSearch(graph));
+            try{
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e){
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            return new DistanceTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), nodeBound);
+        }
+    }
+
+    /**
+     * @param graph graph to be traversed
+     * @return the distance from every node to every other node, as big-endian shorts
+     */
+    static byte[] runBreadthFirstSearch(CompiledGraph graph){
+        int nodeBound = graph.nodeBound();
+        ByteBuffer table = ByteBuffer.allocate(nodeBound * nodeBound * Short.BYTES);
+        short[] distances = new short[nodeBound];
+        int[] queue = new int[nodeBound];
+        for(int source = 0; source < nodeBound; source++){
+            Arrays.fill(distances, UNREACHABLE);
+            distances[source] = 0;
+            int head = 0, tail = 0;
+            queue[tail++] = source;
+            while(head < tail){
+                int u = queue[head++];
+                for(int v : graph.neighbours(u)){
+                    //The first time v is seen is along a shortest path
+                    if(distances[v] == UNREACHABLE){
+                        distances[v] = (short)(distances[u] + 1);
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            for(int destination = 0; destination < nodeBound; destination++)
+                table.putShort(distances[destination]);
+        }
+        return table.array();
+    }
+
+    //FNV-1a over the graph's structure, so a cached table is never used for a different graph
+    private static long hash(CompiledGraph graph){
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ graph.nodeBound()) * 0x100000001b3L;
+        for(int u = 0; u < graph.nodeBound(); u++){
+            int[] neighbours = graph.neighbours(u);
+            byte[] transports = graph.transports(u);
+            hash = (hash ^ neighbours.length) * 0x100000001b3L;
+            for(int i = 0; i < neighbours.length; i++){
+                hash = (hash ^ neighbours[i]) * 0x100000001b3L;
+                hash = (hash ^ transports[i]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+}
@@ -17,13 +17,13 @@ import uk.ac.bris.cs.scotlandyard.model.Move.*;
 public class DumbMrXAI implements Ai {
 
     private Visitor<Integer> destinationVisitor;
-    private List<int[]> distances;
+    private DistanceTable distances;
 
     @Override
     public void onStart(){
 		destinationVisitor = new FunctionalVisitor<>(x -> x.destination, x -> x.destination2);
         try{
-            distances = Dijkstra.runDijkstraOnGraph(ScotlandYard.standardGraph());
+            distances = DistanceTable.of(ScotlandYard.standardGraph());
         }
         catch(IOException e){
             distances = null;
@@ -73,11 +73,11 @@ public class DumbMrXAI implements Ai {
         }
 	    List<Integer> score = new ArrayList<>();
 	    //Obtain mean distance from detectives for each point
-	    for(int i = 0; i < distances.get(0).length; i++){
+	    for(int i = 0; i < board.getSetup().graph.nodes().size(); i++){
             List<Integer> distancesAtSamePoint = new ArrayList<>();
 	        for(int j = 0; j < detectiveLocations.size(); j++){
-	            int detectiveLocation = detectiveLocations.get(j - 1);
-                distancesAtSamePoint.add(distances.get(detectiveLocation)[i]);
+	            int detectiveLocation = detectiveLocations.get(j);
+                distancesAtSamePoint.add(distances.distance(detectiveLocation, i + 1));
             }
 	        int median = getMedian(distancesAtSamePoint);
             score.add(median);
@@ -0,0 +1,21 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+
+import java.util.List;
+
+/**
+ * Scores boards at the bottom of the search. Mr X's search picks the highest scores, the detectives' the lowest.
+ * Evaluators are called from every search thread at once, so must not keep state between calls.
+ */
+public interface Evaluator {
+    /**
+     * @param edge moves used to reach the board
+     * @param state the board, loaded into a reusable view; its Mr X location is -1 if detectives
+     * @param player whose search it is, Mr X if true and Detectives if false
+     * @param belief the positions that the detectives speculate Mr X could be in
+     * @param distribution how likely Mr X is to be in each of those positions; null if Mr X
+     * @return the board's score
+     */
+    int evaluate(List<Move> edge, LeafState state, boolean player, MrXBelief belief, MrXDistribution distribution);
+}
@@ -0,0 +1,135 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The things about a board that {@link LinearEvaluator} weighs up, each read as a number.
+ * <br>
+ * {@link #extract} works every feature out into an array indexed by ordinal, without allocating, so it can be
+ * done once per board and then scored with any number of {@link Weights}.
+ */
+public enum Feature {
+    /**
+     * Sum over detectives of one over their distance to Mr X, or to the nearest place he could be in the
+     * detectives' search. Detectives that have caught him are counted in CAUGHT instead
+     */
+    DISTANCE,
+    /**
+     * How many detectives are on Mr X, or on a place he could be in the detectives' search
+     */
+    CAUGHT,
+    /**
+     * How many places the detectives think Mr X could be, up to VISIBILITY_MAX
+     */
+    VISIBILITY,
+    /**
+     * How expensive the tickets used to reach the board were
+     */
+    PRICE,
+    /**
+     * For Mr X, 1 if a taxi leaves his location. For the detectives, how many of them a taxi leaves.
+     * Likewise for the next three features
+     */
+    TAXI,
+    BUS,
+    UNDERGROUND,
+    FERRY,
+    /**
+     * The distance from Mr X to the nearest detective, averaged over where he is likely to be.
+     * Only in the detectives' search
+     */
+    EXPECTED_DISTANCE;
+
+    private static final Feature[] FEATURES = values();
+    //Past this many places Mr X could be, more hardly make him harder to find, and keeps visibility from
+    //outweighing everything else now that every possible place is tracked
+    static final int VISIBILITY_MAX = 7;
+
+    /**
+     * @return how many features there are, the length of a feature array
+     */
+    public static int count(){ return FEATURES.length; }
+
+    /**
+     * Works out every feature of a board
+     * @param features filled in with each feature's value, indexed by ordinal
+     * @param edge moves used to reach the board
+     * @param state the board
+     * @param player whose search it is, Mr X if true and Detectives if false
+     * @param belief the positions that the detectives speculate Mr X could be in
+     * @param distribution how likely Mr X is to be in each of those positions; null if Mr X
+     */
+    public static void extract(double[] features, List<Move> edge, LeafState state, boolean player,
+                               MrXBelief belief, MrXDistribution distribution){
+        Arrays.fill(features, 0);
+        for(int i = 0; i < state.detectiveCount(); i++){
+            int distance = player ? distance(state, i, state.mrXLocation()) : nearestPossibleLocation(state, i, belief);
+            if(distance == 0)
+                features[CAUGHT.ordinal()]++;
+            else
+                features[DISTANCE.ordinal()] += 1.0 / distance;
+            if(!player)
+                addTransports(features, state, state.detectiveLocation(i));
+        }
+        if(player)
+            addTransports(features, state, state.mrXLocation());
+        features[VISIBILITY.ordinal()] = Integer.min(belief.size(), VISIBILITY_MAX);
+        features[PRICE.ordinal()] = MiniMaxAI.ticketPrice(edge);
+        if(distribution != null)
+            features[EXPECTED_DISTANCE.ordinal()] = expectedDistance(state, distribution);
+    }
+
+    //Counts each mode of transport leaving u
+    private static void addTransports(double[] features, LeafState state, int u){
+        int transports = state.features().transports(u);
+        if((transports & CompiledGraph.transportBit(Transport.TAXI)) != 0) features[TAXI.ordinal()]++;
+        if((transports & CompiledGraph.transportBit(Transport.BUS)) != 0) features[BUS.ordinal()]++;
+        if((transports & CompiledGraph.transportBit(Transport.UNDERGROUND)) != 0) features[UNDERGROUND.ordinal()]++;
+        if((transports & CompiledGraph.transportBit(Transport.FERRY)) != 0) features[FERRY.ordinal()]++;
+    }
+
+    //Only count how far the detective can really travel with the tickets it has left
+    private static int distance(LeafState state, int detective, int destination){
+        return MiniMaxAI.ticketDistances.distance(state.detectiveLocation(detective), destination,
+                state.tickets(detective, Ticket.TAXI), state.tickets(detective, Ticket.BUS),
+                state.tickets(detective, Ticket.UNDERGROUND));
+    }
+
+    //How far the detective is from the nearest place Mr X could be
+    //With nowhere left that fits the log, the underground stations are used as a guess
+    private static int nearestPossibleLocation(LeafState state, int detective, MrXBelief belief){
+        int bestDistance = Integer.MAX_VALUE;
+        if(belief.isEmpty()){
+            for(int x : state.features().undergroundStations())
+                bestDistance = Integer.min(bestDistance, distance(state, detective, x));
+        }
+        else{
+            for(int x = belief.next(0); x >= 0; x = belief.next(x + 1))
+                bestDistance = Integer.min(bestDistance, distance(state, detective, x));
+        }
+        return bestDistance;
+    }
+
+    //How far Mr X is from the nearest detective, averaged over where he is likely to be
+    //Unreachable nodes are left out, so it can only be compared between boards on the same graph
+    private static double expectedDistance(LeafState state, MrXDistribution distribution){
+        double expected = 0;
+        for(int v = 0; v < distribution.nodeBound(); v++){
+            float p = distribution.probability(v);
+            if(p == 0f)
+                continue;
+            int nearest = Integer.MAX_VALUE;
+            for(int i = 0; i < state.detectiveCount(); i++)
+                nearest = Integer.min(nearest, MiniMaxAI.distances.distance(state.detectiveLocation(i), v));
+            if(nearest != Integer.MAX_VALUE)
+                expected += p * nearest;
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,341 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game tree kept in parallel arrays, with each node an index into them. The root starts as node 0, and can be
+ * moved down to any node with {@link #reRoot} without copying anything.
+ * <br>
+ * Each node holds its parent, its first child and next sibling, its score, the moves that reach it from its
+ * parent and its {@link Zobrist#positionKey}, by which the root's children are looked up. Boards aren't kept for
+ * every node: only the root's is given, and any other is worked out from its parent's by making its moves the first
+ * time it is asked for, then kept.
+ * <br>
+ * Nodes are only added down to a fixed depth below the root, as a search only needs the top few levels once it
+ * has finished. Levels alternate between the maximiser and the minimiser, so a node whose children have been
+ * removed can work its score out again from the ones left. A tree must only be changed by one thread at a time.
+ */
+public final class GameTree {
+
+    /**
+     * Stands for no node, such as the parent of the root or the child of a leaf
+     */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxDepth;
+    //Whose turn it is at node 0
+    private final boolean maximising;
+    private int root;
+    private int size;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] depth;
+    private int[] score;
+    //Set for nodes which have had children removed since their score was last worked out
+    private boolean[] stale;
+    private long[] keys;
+    private Object[] moves;
+    //null for nodes whose board hasn't been asked for yet
+    private Board[] boards;
+    //The children of indexedRoot by key, built the first time findChild is used from that root
+    private final Map<Long, Integer> childIndex = new HashMap<>();
+    private int indexedRoot = NONE;
+    //The child of the root its score came from, NONE if it isn't known
+    private int bestChild = NONE;
+
+    /**
+     * @param root the board at the root
+     * @param maxDepth the deepest level below the root nodes can be added at
+     * @param maximising whose turn it is at the root, the maximiser's if true
+     */
+    public GameTree(@Nonnull Board root, int maxDepth, boolean maximising){
+        this.maxDepth = maxDepth;
+        this.maximising = maximising;
+        this.parent = new int[INITIAL_CAPACITY];
+        this.firstChild = new int[INITIAL_CAPACITY];
+        this.lastChild = new int[INITIAL_CAPACITY];
+        this.nextSibling = new int[INITIAL_CAPACITY];
+        this.depth = new int[INITIAL_CAPACITY];
+        this.score = new int[INITIAL_CAPACITY];
+        this.stale = new boolean[INITIAL_CAPACITY];
+        this.keys = new long[INITIAL_CAPACITY];
+        this.moves = new Object[INITIAL_CAPACITY];
+        this.boards = new Board[INITIAL_CAPACITY];
+        allocate(NONE, null, 0, Zobrist.positionKey((BoardToGameState)root));
+        boards[0] = root;
+    }
+
+    /**
+     * @return the root node
+     */
+    public int root(){ return root; }
+
+    private int allocate(int parentNode, List<Move> incidentMoves, int nodeDepth, long key){
+        if(size == parent.length){
+            int capacity = size * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            score = Arrays.copyOf(score, capacity);
+            stale = Arrays.copyOf(stale, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            moves = Arrays.copyOf(moves, capacity);
+            boards = Arrays.copyOf(boards, capacity);
+        }
+        int node = size++;
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        lastChild[node] = NONE;
+        nextSibling[node] = NONE;
+        depth[node] = nodeDepth;
+        score[node] = -1;
+        stale[node] = false;
+        keys[node] = key;
+        moves[node] = incidentMoves;
+        boards[node] = null;
+        return node;
+    }
+
+    /**
+     * Adds a node after any children parent already has
+     * @param parentNode the node to add a child to, or NONE
+     * @param incidentMoves the moves that reach the child from parentNode
+     * @param board the board at the child, only read for its key
+     * @return the new child, or NONE if parentNode is NONE or already at the deepest level allowed
+     */
+    public int addChild(int parentNode, @Nonnull List<Move> incidentMoves, @Nonnull Board board){
+        if(!canAddChild(parentNode))
+            return NONE;
+        return link(parentNode, incidentMoves, Zobrist.positionKey((BoardToGameState)board));
+    }
+
+    private boolean canAddChild(int parentNode){
+        return parentNode != NONE && depth[parentNode] - depth[root] < maxDepth;
+    }
+
+    private int link(int parentNode, List<Move> incidentMoves, long key){
+        int node = allocate(parentNode, incidentMoves, depth[parentNode] + 1, key);
+        if(lastChild[parentNode] == NONE)
+            firstChild[parentNode] = node;
+        else
+            nextSibling[lastChild[parentNode]] = node;
+        lastChild[parentNode] = node;
+        if(parentNode == indexedRoot)
+            childIndex.putIfAbsent(key, node);
+        return node;
+    }
+
+    /**
+     * Copies node and the part of other below it into this tree, as a child of parentNode. Anything deeper than
+     * this tree allows is left out
+     * @param parentNode the node to add the copy to
+     * @param incidentMoves the moves that reach the copy from parentNode
+     * @param other the tree to copy from
+     * @param node the node of other to copy
+     * @return the copy of node, or NONE if parentNode is NONE or already at the deepest level allowed
+     */
+    public int graft(int parentNode, @Nonnull List<Move> incidentMoves, @Nonnull GameTree other, int node){
+        if(!canAddChild(parentNode))
+            return NONE;
+        int copy = link(parentNode, incidentMoves, other.keys[node]);
+        score[copy] = other.score[node];
+        boards[copy] = other.boards[node];
+        for(int c = other.firstChild(node); c != NONE; c = other.nextSibling(c))
+            graft(copy, other.moves(c), other, c);
+        return copy;
+    }
+
+    /**
+     * Makes node the root, in place. Everything outside of node's subtree is dropped at once, rather than node by
+     * node, and as slots aren't reused the tree still takes up as much space as before
+     * @param node a node below the root, or the root
+     */
+    public void reRoot(int node){
+        //Worked out while its ancestors are still there to work it out from
+        board(node);
+        parent[node] = NONE;
+        nextSibling[node] = NONE;
+        root = node;
+        bestChild = NONE;
+    }
+
+    /**
+     * Takes child, and everything below it, out of the tree, leaving parentNode's score to be worked out again
+     * from its other children the next time it is asked for. Its slots aren't reused
+     * @param parentNode the node child belongs to
+     * @param child the child to take out
+     */
+    public void removeChild(int parentNode, int child){
+        int previous = NONE;
+        for(int c = firstChild[parentNode]; c != NONE; c = nextSibling[c]){
+            if(c == child){
+                if(previous == NONE)
+                    firstChild[parentNode] = nextSibling[c];
+                else
+                    nextSibling[previous] = nextSibling[c];
+                if(lastChild[parentNode] == c)
+                    lastChild[parentNode] = previous;
+                stale[parentNode] = true;
+                for(int p = parent[parentNode]; p != NONE; p = parent[p])
+                    stale[p] = true;
+                if(parentNode == indexedRoot)
+                    indexedRoot = NONE;
+                if(child == bestChild)
+                    bestChild = NONE;
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    /**
+     * @param node a node
+     * @return the node's first child, or NONE if it has none
+     */
+    public int firstChild(int node){ return firstChild[node]; }
+
+    /**
+     * @param node a node
+     * @return the next child of node's parent after node, or NONE if it is the last
+     */
+    public int nextSibling(int node){ return nextSibling[node]; }
+
+    /**
+     * @param node a node
+     * @return whether node has no children
+     */
+    public boolean isLeaf(int node){ return firstChild[node] == NONE; }
+
+    /**
+     * @param node a node
+     * @return whether it is the maximiser's turn at node
+     */
+    public boolean isMaximising(int node){
+        return maximising == (depth[node] % 2 == 0);
+    }
+
+    /**
+     * @param node a node
+     * @return the node's score, the best of its children's if any have been removed since it was set
+     */
+    public int score(int node){
+        if(stale[node]){
+            stale[node] = false;
+            if(!isLeaf(node)){
+                boolean max = isMaximising(node);
+                int best = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+                for(int c = firstChild[node]; c != NONE; c = nextSibling[c])
+                    best = max ? Integer.max(best, score(c)) : Integer.min(best, score(c));
+                score[node] = best;
+            }
+        }
+        return score[node];
+    }
+
+    /**
+     * @param node a node
+     * @param value the node's new score
+     */
+    public void setScore(int node, int value){
+        score[node] = value;
+        stale[node] = false;
+    }
+
+    /**
+     * Marks which child of the root the root's score came from, as a child cut off by the search can have the
+     * same score without being as good
+     * @param child a child of the root, or NONE
+     */
+    public void setBestChild(int child){ bestChild = child; }
+
+    /**
+     * @return the child of the root given to {@link #setBestChild}, or NONE if none has been given since the root
+     *         last changed or it has been removed
+     */
+    public int bestChild(){ return bestChild; }
+
+    /**
+     * @param node a node
+     * @return the moves that reach node from its parent, null for the root
+     */
+    @SuppressWarnings("unchecked")
+    public List<Move> moves(int node){ return (List<Move>)moves[node]; }
+
+    /**
+     * @param node a node
+     * @return the board at node, worked out from its parent's the first time it is asked for
+     */
+    @Nonnull public Board board(int node){
+        if(boards[node] == null){
+            Board board = board(parent[node]);
+            for(Move m : moves(node))
+                board = ((BoardToGameState)board).forceAdvance(m);
+            boards[node] = board;
+        }
+        return boards[node];
+    }
+
+    static boolean compareBoards(Board b, Board c){
+        if(!b.getPlayers().equals(c.getPlayers()))
+            return false;
+        for(Piece p : b.getPlayers()){
+            if(p.isDetective()){
+                int bLocation = b.getDetectiveLocation((Detective)p).get();
+                int cLocation = c.getDetectiveLocation((Detective)p).get();
+                if(bLocation != cLocation)
+                    return false;
+            }
+            var bTickets = b.getPlayerTickets(p).get();
+            var cTickets = c.getPlayerTickets(p).get();
+            for(Ticket t : Ticket.values()){
+                if(bTickets.getCount(t) != cTickets.getCount(t))
+                    return false;
+            }
+        }
+        if(!b.getAvailableMoves().equals(c.getAvailableMoves()))
+            return false;
+        return true;
+    }
+
+    /**
+     * @param node a node
+     * @return the node's {@link Zobrist#positionKey}
+     */
+    public long key(int node){ return keys[node]; }
+
+    /**
+     * Looks b up by its key, so only a node with the same key has its board compared with b
+     * @param b the board to find
+     * @return the root or a child of the root which holds the same position as b, or NONE if there isn't one
+     */
+    public int findChild(@Nonnull Board b){
+        long key = Zobrist.positionKey((BoardToGameState)b);
+        if(keys[root] == key && compareBoards(board(root), b)) return root;
+        if(indexedRoot != root){
+            childIndex.clear();
+            for(int c = firstChild(root); c != NONE; c = nextSibling(c))
+                childIndex.putIfAbsent(keys[c], c);
+            indexedRoot = root;
+        }
+        Integer child = childIndex.get(key);
+        if(child != null && compareBoards(board(child), b))
+            return child;
+        return NONE;
+    }
+}
@@ -0,0 +1,71 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Facts about each node of a game graph which {@link Feature#extract} reads when scoring leaves, worked out once
+ * per graph so scoring never has to look through a node's edges.
+ */
+public final class GraphFeatures {
+
+    private static final LoadingCache<CompiledGraph, GraphFeatures> cache =
+            CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(GraphFeatures::new));
+
+    private final int[] undergroundStations;
+    //Every transport on any edge leaving each node, as a CompiledGraph transport mask
+    private final int[] transports;
+
+    private GraphFeatures(CompiledGraph graph){
+        int nodeBound = graph.nodeBound();
+        this.transports = new int[nodeBound];
+        int stations = 0;
+        for(int u = 0; u < nodeBound; u++){
+            for(byte t : graph.transports(u))
+                transports[u] |= t;
+            if((transports[u] & CompiledGraph.transportBit(Transport.UNDERGROUND)) != 0)
+                stations++;
+        }
+        this.undergroundStations = new int[stations];
+        stations = 0;
+        for(int u = 0; u < nodeBound; u++){
+            if((transports[u] & CompiledGraph.transportBit(Transport.UNDERGROUND)) != 0)
+                undergroundStations[stations++] = u;
+        }
+    }
+
+    /**
+     * @param graph the game graph
+     * @return the features of graph, shared with anyone else using the same graph
+     */
+    @Nonnull public static GraphFeatures of(@Nonnull CompiledGraph graph){
+        return cache.getUnchecked(graph);
+    }
+
+    /**
+     * @param board the current board
+     * @return the features of the board's graph
+     */
+    @Nonnull public static GraphFeatures of(@Nonnull Board board){
+        return of(CompiledGraph.of(board.getSetup().graph));
+    }
+
+    /**
+     * @return every node with an underground line, smallest first. Must not be modified
+     */
+    @Nonnull public int[] undergroundStations(){ return undergroundStations; }
+
+    /**
+     * @param u a node
+     * @return a mask, as in {@link CompiledGraph#transportBit}, of every transport that leaves u
+     */
+    public int transports(int u){
+        return u >= 0 && u < transports.length ? transports[u] : 0;
+    }
+}
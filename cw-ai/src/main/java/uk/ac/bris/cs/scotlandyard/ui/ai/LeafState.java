@@ -0,0 +1,91 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The parts of a board that scoring a leaf reads, copied into flat arrays.
+ * <br>
+ * A state is loaded again for every leaf rather than made new, so scoring doesn't allocate: keep one per search
+ * thread. Loading from a {@link BoardToGameState} made by the search reads its maps directly, other boards go
+ * through the {@link Board} methods.
+ */
+public final class LeafState {
+
+    private static final Detective[] DETECTIVES = Detective.values();
+    private static final Ticket[] TICKETS = Ticket.values();
+
+    private GameSetup setup;
+    private GraphFeatures features;
+    private int mrXLocation;
+    private int detectiveCount;
+    private final int[] detectiveLocations = new int[DETECTIVES.length];
+    //detectiveTickets[i * TICKETS.length + ticket.ordinal()] is how many of ticket the i-th detective has
+    private final int[] detectiveTickets = new int[DETECTIVES.length * TICKETS.length];
+
+    /**
+     * Makes this state hold board, replacing whatever it held before
+     * @param board the board to score
+     * @param mrXLocation Mr X's location on board, -1 if it isn't known
+     */
+    public void load(@Nonnull Board board, int mrXLocation){
+        if(board.getSetup() != setup){
+            setup = board.getSetup();
+            features = GraphFeatures.of(CompiledGraph.of(setup.graph));
+        }
+        this.mrXLocation = mrXLocation;
+        detectiveCount = 0;
+        BoardToGameState state = board instanceof BoardToGameState ? (BoardToGameState)board : null;
+        for(Detective d : DETECTIVES){
+            int location = state != null ? state.detectiveLocation(d) : board.getDetectiveLocation(d).orElse(-1);
+            if(location == -1)
+                continue;
+            detectiveLocations[detectiveCount] = location;
+            for(Ticket t : TICKETS){
+                detectiveTickets[detectiveCount * TICKETS.length + t.ordinal()] = state != null
+                        ? state.ticketCount(d, t) : ticketCount(board, d, t);
+            }
+            detectiveCount++;
+        }
+    }
+
+    private static int ticketCount(Board board, Piece piece, Ticket ticket){
+        return board.getPlayerTickets(piece).map(t -> t.getCount(ticket)).orElse(0);
+    }
+
+    /**
+     * @return the features of the game graph
+     */
+    @Nonnull public GraphFeatures features(){ return features; }
+
+    /**
+     * @return Mr X's location, -1 if it isn't known
+     */
+    public int mrXLocation(){ return mrXLocation; }
+
+    /**
+     * @return how many detectives are in the game
+     */
+    public int detectiveCount(){ return detectiveCount; }
+
+    /**
+     * @param i a detective, from 0 to detectiveCount() - 1
+     * @return the detective's location
+     */
+    public int detectiveLocation(int i){ return detectiveLocations[i]; }
+
+    /**
+     * @param i a detective, from 0 to detectiveCount() - 1
+     * @param ticket a ticket
+     * @return how many of ticket the detective has
+     */
+    public int tickets(int i, @Nonnull Ticket ticket){
+        return detectiveTickets[i * TICKETS.length + ticket.ordinal()];
+    }
+}
@@ -0,0 +1,78 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Scores a board as a weighted sum of its {@link Feature}s, with separate {@link Weights} for Mr X's search and the
+ * detectives'. A board where a detective has caught Mr X is always the worst possible for him, whatever the weights.
+ */
+public final class LinearEvaluator implements Evaluator {
+
+    private final Weights mrX;
+    private final Weights detectives;
+    //Filled in for each board scored, one per search thread
+    private final ThreadLocal<double[]> features = ThreadLocal.withInitial(() -> new double[Feature.count()]);
+
+    /**
+     * Uses the default weights
+     */
+    public LinearEvaluator(){
+        this(Weights.MRX_DEFAULTS, Weights.DETECTIVE_DEFAULTS);
+    }
+
+    /**
+     * @param mrX the weights for Mr X's search
+     * @param detectives the weights for the detectives' search
+     */
+    public LinearEvaluator(@Nonnull Weights mrX, @Nonnull Weights detectives){
+        this.mrX = mrX;
+        this.detectives = detectives;
+    }
+
+    /**
+     * Reads weights from a properties file, where Mr X's are prefixed with "mrx." and the detectives' with
+     * "detectives.", for example
+     * <pre>
+     * mrx.distance=-200
+     * detectives.expected_distance=20
+     * </pre>
+     * @param file the file to read
+     * @return an evaluator using the file's weights, and the defaults for any it leaves out
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if a weight isn't a number
+     */
+    @Nonnull public static LinearEvaluator load(@Nonnull Path file) throws IOException {
+        Properties properties = new Properties();
+        try(Reader reader = Files.newBufferedReader(file)){
+            properties.load(reader);
+        }
+        return new LinearEvaluator(Weights.parse(properties, "mrx.", Weights.MRX_DEFAULTS),
+                Weights.parse(properties, "detectives.", Weights.DETECTIVE_DEFAULTS));
+    }
+
+    /**
+     * @param player whose search it is, Mr X if true and Detectives if false
+     * @return the weights used for player's search
+     */
+    @Nonnull public Weights weights(boolean player){
+        return player ? mrX : detectives;
+    }
+
+    @Override
+    public int evaluate(List<Move> edge, LeafState state, boolean player, MrXBelief belief,
+                        MrXDistribution distribution){
+        double[] features = this.features.get();
+        Feature.extract(features, edge, state, player, belief, distribution);
+        if(player && features[Feature.CAUGHT.ordinal()] > 0)
+            return Integer.MIN_VALUE;
+        return (int)weights(player).score(features);
+    }
+}
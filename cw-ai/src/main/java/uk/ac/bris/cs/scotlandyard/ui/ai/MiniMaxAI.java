@@ -1,26 +1,31 @@
 package uk.ac.bris.cs.scotlandyard.ui.ai;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Ints;
 import uk.ac.bris.cs.scotlandyard.model.*;
 import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
-import uk.ac.bris.cs.scotlandyard.model.Board.TicketBoard;
 import uk.ac.bris.cs.scotlandyard.model.Move.*;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.function.IntToDoubleFunction;
 
 public class MiniMaxAI implements Ai {
 
     //Tree to hold future boards
-    Tree gameTree;
-    //Keeps track of where Mr X might be
-    //Updated after a Mr X turn, so is static for detectives to make use of
-    static ImmutableList<Integer> possibleMrXLocations;
+    GameTree gameTree;
+    //Trees from the last search of each guess at Mr X's location, each re-rooted at the moves that were played
+    List<GameTree> sampleTrees;
     //Holds moves which are pending
     //Used for when detective moves are performed
     LinkedList<Move> moveQueue;
@@ -34,72 +39,166 @@ public class MiniMaxAI implements Ai {
     public final static  Visitor<Boolean> secretMoveVisitor = new FunctionalVisitor<>(x -> x.ticket.equals(Ticket.SECRET),
             x -> x.ticket1.equals(Ticket.SECRET) || x.ticket2.equals(Ticket.SECRET));
 
-    //A cap on the number of possible Mr X positions to track
-    final int POSSIBLE_POSITION_MAX = 7;
-    //Number of levels in the tree
-    final int TREE_DEPTH = 2;
+    //Deepest number of levels iterative deepening will search to
+    final int MAX_TREE_DEPTH = 10;
+    //Levels of each search kept in its tree. Enough to find the next turn's root among them and
+    //order its children by their scores
+    static final int RETAINED_DEPTH = 3;
     //Minimum number of distinct single move destinations needed to exclude double moves
     final int FREEDOM_OF_MOVEMENT = 4;
-    //The amount of time the move selection is allowed to run for
+    //The amount of time the move selection is allowed to run for, unless set with TIME_LIMIT_PROPERTY
     final double TIME_LIMIT = 29;
+    //System property setting how many seconds the move selection is allowed to run for
+    public static final String TIME_LIMIT_PROPERTY = "scotlandyard.ai.timeLimit";
 
-    //Holds shortest path arrays for all nodes in graph
-    public static List<int[]> dijkstraDistances;
+    //Holds shortest path lengths between all nodes in graph
+    public static DistanceTable distances;
+    //Shortest path lengths limited by the tickets a detective has left
+    public static TicketDistances ticketDistances;
+
+    //System property setting how many threads to search with, defaulting to one per processor
+    public static final String THREADS_PROPERTY = "scotlandyard.ai.threads";
+    //Number of threads the search is split between. With 1, everything runs on the calling thread
+    final int threads;
+    //System property setting how many guesses at Mr X's location the detectives search, 0 to search every
+    //possible location in one tree instead. Defaults to one per thread, but at least MIN_DETERMINIZATIONS
+    public static final String DETERMINIZATIONS_PROPERTY = "scotlandyard.ai.determinizations";
+    //Fewest guesses at Mr X's location searched by default
+    final int MIN_DETERMINIZATIONS = 4;
+    //Number of guesses at Mr X's location the detectives search
+    final int determinizations;
+    //Searches the root's branches in parallel; null when only one thread is used
+    volatile ForkJoinPool pool;
+    //The deadline of the search in progress, so onTerminate can stop it. null between searches
+    volatile Deadline currentDeadline;
+    //log2 of the number of positions the transposition table holds
+    final int TABLE_SIZE_LOG2 = 18;
+    //Scores of positions already searched, kept between turns
+    final TranspositionTable table = new TranspositionTable(TABLE_SIZE_LOG2);
+    //Moves which caused cutoffs, tried first at other nodes
+    final MoveOrdering ordering = new MoveOrdering(MAX_TREE_DEPTH + 1);
+    //Reloaded for every leaf scored, one per search thread
+    private final ThreadLocal<LeafState> leafStates = ThreadLocal.withInitial(LeafState::new);
+    //System property naming a properties file of weights for the default LinearEvaluator
+    public static final String WEIGHTS_PROPERTY = "scotlandyard.ai.weights";
+    //Scores the leaves of the search
+    final Evaluator evaluator;
+
+    //A child of the root, waiting to be searched
+    private static final class Branch {
+        final List<Move> moves;
+        final Board board;
+        final MrXBelief belief;
+        //Its own copy, as branches are searched on different threads. null in Mr X's search
+        final MrXDistribution distribution;
+
+        Branch(List<Move> moves, Board board, MrXBelief belief, MrXDistribution distribution){
+            this.moves = moves;
+            this.board = board;
+            this.belief = belief;
+            this.distribution = distribution;
+        }
+    }
+
+    //The best score among the root's children so far, as alpha for Mr X and beta for the detectives, and which
+    //branch it came from. Shared by the threads searching the branches
+    private static final class RootBound {
+        private final boolean maximising;
+        private int score;
+        private int branch;
+
+        RootBound(boolean maximising, int score){
+            this.maximising = maximising;
+            this.score = score;
+        }
+
+        synchronized int score(){ return score; }
+
+        synchronized int branch(){ return branch; }
+
+        //Only a strictly better score is taken, as that is the only kind a branch searched against the bound
+        //returns exactly. One that fails against the bound can come back equal to it while being worse
+        synchronized void offer(int eval, int branch){
+            if(maximising ? eval > score : eval < score){
+                this.score = eval;
+                this.branch = branch;
+            }
+        }
+    }
+
+    public MiniMaxAI(){
+        this(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param threads how many threads to search with, 1 for a deterministic single threaded search
+     */
+    public MiniMaxAI(int threads){
+        this(threads, defaultEvaluator());
+    }
+
+    /**
+     * @param threads how many threads to search with, 1 for a deterministic single threaded search
+     * @param evaluator scores the leaves of the search
+     */
+    public MiniMaxAI(int threads, Evaluator evaluator){
+        this.evaluator = evaluator;
+        this.threads = Integer.max(1, threads);
+        this.determinizations = Integer.max(0, Integer.getInteger(DETERMINIZATIONS_PROPERTY,
+                Integer.max(MIN_DETERMINIZATIONS, this.threads)));
+    }
+
+    /**
+     * @return a LinearEvaluator with the weights in the file named by WEIGHTS_PROPERTY, or the default weights
+     *         if it isn't set
+     */
+    static Evaluator defaultEvaluator(){
+        String file = System.getProperty(WEIGHTS_PROPERTY);
+        if(file == null)
+            return new LinearEvaluator();
+        try{
+            return LinearEvaluator.load(Paths.get(file));
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
 
     /**
      * Initialises some attributes of the Ai, and gives default values to others
      */
     public void onStart(){
-        if(dijkstraDistances == null){
+        if(distances == null){
             try{
-                dijkstraDistances = Dijkstra.runDijkstraOnGraph(ScotlandYard.standardGraph());
+                var graph = ScotlandYard.standardGraph();
+                distances = DistanceTable.of(graph);
+                ticketDistances = new TicketDistances(CompiledGraph.of(graph));
             }
             catch(IOException e){
-                dijkstraDistances = null;
+                distances = null;
+                ticketDistances = null;
             }
         }
         moveQueue = new LinkedList<>();
         gameTree = null;
-        possibleMrXLocations = ImmutableList.<Integer>builder().build();
+        sampleTrees = null;
         mrXLocation = -1;
+        if(threads > 1 && pool == null)
+            pool = new ForkJoinPool(threads);
     }
 
     /**
-     * @param moves the move lists to permute
-     * @return all of the permutations of moves
+     * Stops any search in progress and the search threads
      */
-    List<List<Move>> permutations(Map<Piece, List<Move>> moves){
-        List<List<Move>> playerMoves = new ArrayList<>();
-        for(var e : moves.entrySet()){
-            playerMoves.add(e.getValue());
-        }
-        return permuteMoves(playerMoves, 0);
-    }
-
-    /**
-     * @param playerMoves the lists to combine
-     * @param depth counter to determine when to reach the base case
-     * @return the permutations of the lists from [depth, playerMoves.size() - 1]
-     */
-    List<List<Move>> permuteMoves(List<List<Move>> playerMoves, int depth){
-        List<List<Move>> permutations = new ArrayList<>();
-        if(depth == playerMoves.size() - 1){
-            for(Move m : playerMoves.get(depth))
-                permutations.add(new ArrayList<>(List.of(m)));
-            return permutations;
-        }
-        else{
-            permutations = permuteMoves(playerMoves, depth + 1);
-            List<List<Move>> newPermutations = new ArrayList<>();
-            for(Move m : playerMoves.get(depth)){
-                for(List<Move> ms : permutations){
-                    List<Move> newMoveList = new ArrayList<>(ms);
-                    newMoveList.add(m);
-                    newPermutations.add(newMoveList);
-                }
-            }
-            return newPermutations;
-        }
+    @Override
+    public void onTerminate(){
+        Deadline deadline = currentDeadline;
+        if(deadline != null)
+            deadline.cancel();
+        ForkJoinPool oldPool = pool;
+        pool = null;
+        if(oldPool != null)
+            oldPool.shutdownNow();
     }
 
     /**
@@ -213,83 +312,6 @@ public class MiniMaxAI implements Ai {
         return newMap;
     }
 
-    /**
-     * @param board new gamestate
-     * @param currentLocations MrX's possible locations from previous gamestate
-     * @param m move used to reach gamestate
-     * @return
-     */
-    private ImmutableList<Integer> getPossibleMrXLocations(Board board, List<Integer> currentLocations, Move m){
-        int roundNumber = board.getMrXTravelLog().size();
-        //If there have been no reveal rounds up to this point, no information to go off
-        if(board.getMrXTravelLog().stream().allMatch(x -> x.location().isEmpty()))
-            return ImmutableList.<Integer>builder().build();
-        //If a reveal round, return only the current location
-        if(board.getSetup().rounds.get(roundNumber - 1)){
-            return ImmutableList.of(m.visit(destinationVisitor));
-        }
-        List<Integer> possibleLocations;
-        //For double moves
-        if(!m.visit(moveTypeVisitor)){
-            //If skipping over a reveal, get the new location and then take the neighbours of it
-            if(board.getMrXTravelLog().get(roundNumber - 2).location().isPresent()){
-                currentLocations = List.of(board.getMrXTravelLog().get(roundNumber - 2).location().get());
-                possibleLocations = getNeighbours(board, currentLocations, ((DoubleMove)m).ticket2);
-            }
-            //If not, get the neighbours of the neighbours of all current possible locations, and add them.
-            else{
-                possibleLocations = getNeighbours(board, currentLocations, ((DoubleMove)m).ticket1);
-                possibleLocations = getNeighbours(board, possibleLocations, ((DoubleMove)m).ticket2);
-            }
-        }
-        //If a single move, simply get all neighbours of the current possible locations
-        else{
-            possibleLocations = getNeighbours(board, currentLocations, ((SingleMove)m).ticket);
-        }
-        //Limits the size of possible locations
-        //Grows exponentially, so difficult to maintain an accurate guess of where Mr X could be
-        if(possibleLocations.size() > POSSIBLE_POSITION_MAX)
-            possibleLocations = possibleLocations.subList(0, POSSIBLE_POSITION_MAX);
-        return ImmutableList.copyOf(possibleLocations);
-    }
-
-    /**
-     * @param board the next gamestate
-     * @param currentLocations the current possible locations of Mr X
-     * @param t the ticket used by Mr X
-     * @return a list of locations that Mr X could reach from any of the previous possible locations
-     */
-    private List<Integer> getNeighbours(Board board, List<Integer> currentLocations, Ticket t) {
-        List<Integer> neighbours = new ArrayList<>();
-        var graph = board.getSetup().graph;
-        TicketBoard tb = board.getPlayerTickets(Piece.MrX.MRX).get();
-        for(int u : currentLocations){
-            for(int v : graph.adjacentNodes(u)){
-                boolean canReachV = false;
-                for(Piece p : board.getPlayers()){
-                    if(p.isDetective()){
-                        Piece.Detective d = (Piece.Detective)p;
-                        if(v == board.getDetectiveLocation(d).get())
-                            canReachV = false;
-                    }
-                }
-                Set<Transport> edge = graph.edgeValue(u, v).get();
-                for(var transport : edge){
-                    Ticket requiredTicket = transport.requiredTicket();
-                    if(requiredTicket.equals(t) && tb.getCount(t) > 0){
-                        canReachV = true;
-                        break;
-                    }
-                }
-                if(t.equals(Ticket.SECRET))
-                    canReachV = true;
-                if(canReachV)
-                    neighbours.add(v);
-            }
-        }
-        return neighbours;
-    }
-
     /**
      * @param moves the list of moves Mr X can make
      * @return the list of moves Mr X can make using only one ticket
@@ -308,21 +330,20 @@ public class MiniMaxAI implements Ai {
      * @param board the current gamestate
      * @param incidentMoves the move used to reach the current gamestate
      * @param player indicates who is making the move - if true, Mr X. if false, Detectives
-     * @return a single-node tree with a decided score
+     * @return the board's score
      */
-    private Tree evaluateLeaf(Board board, List<Move> incidentMoves, boolean player, ImmutableList<Integer> possibleMrXLocations, Clock clock){
-        Tree newTree = new MyTree(board);
+    private int evaluateLeaf(Board board, List<Move> incidentMoves, boolean player, MrXBelief belief,
+                             MrXDistribution distribution){
         if(!board.getWinner().isEmpty()){
             if(board.getWinner().asList().stream().allMatch(Piece::isMrX))
-                newTree.root().setScore(Integer.MAX_VALUE);
+                return Integer.MAX_VALUE;
             else
-                newTree.root().setScore(Integer.MIN_VALUE);
+                return Integer.MIN_VALUE;
         }
-        else{
-            newTree.root().setScore(incidentMoves, board, player, possibleMrXLocations, mrXLocation);
-        }
-        clock.updateClock();
-        return newTree;
+        //Mr X's search knows where he is on every board, the detectives' search only knows a guess
+        LeafState state = leafStates.get();
+        state.load(board, player ? ((BoardToGameState)board).mrXLocation() : -1);
+        return evaluator.evaluate(incidentMoves, state, player, belief, distribution);
     }
 
     /**
@@ -330,7 +351,7 @@ public class MiniMaxAI implements Ai {
      * @param player if true, Mr X is making his move, if false, the detectives are
      * @return the list of moves Mr X it would be sensible for Mr X to take
      */
-    private List<Move> getMrXMoves(Board board, boolean player, List<Integer> possibleMrXLocations){
+    private List<Move> getMrXMoves(Board board, boolean player, MrXBelief belief){
         List<Move> mrXMoves = new ArrayList<>();
         if(player){
             mrXMoves = cullExpensiveMrXMoves(board.getAvailableMoves().asList());
@@ -344,30 +365,39 @@ public class MiniMaxAI implements Ai {
         }
         else{
             Board.TicketBoard tb = board.getPlayerTickets(Piece.MrX.MRX).get();
-            if(!possibleMrXLocations.isEmpty()){
-                for(int u : possibleMrXLocations){
-                    var graph = board.getSetup().graph;
+            //As in the game itself, there is no double move in the last round
+            boolean canDoubleMove = tb.getCount(Ticket.DOUBLE) > 0
+                    && board.getMrXTravelLog().size() < board.getSetup().rounds.size() - 1;
+            if(!belief.isEmpty()){
+                CompiledGraph graph = CompiledGraph.of(board.getSetup().graph);
+                for(int u = belief.next(0); u >= 0; u = belief.next(u + 1)){
+                    int[] neighbours = graph.neighbours(u);
+                    byte[] transports = graph.transports(u);
                     //Adjacent nodes are single move destinations
-                    for(int v : graph.adjacentNodes(u)){
-                        //Each ticket used is a different way to reach v from u
-                        List<Ticket> ticketsUsed = graph.edgeValue(u, v).get().asList()
-                                .stream().map(ScotlandYard.Transport::requiredTicket).collect(Collectors.toList());
-                        //Examine each way to move
-                        for(Ticket t : ticketsUsed){
+                    for(int i = 0; i < neighbours.length; i++){
+                        int v = neighbours[i];
+                        //Each transport is a different way to reach v from u
+                        for(Transport tr : Transport.values()){
+                            if((transports[i] & CompiledGraph.transportBit(tr)) == 0)
+                                continue;
+                            Ticket t = tr.requiredTicket();
                             if(tb.getCount(t) > 0){
                                 Move movePerformed = new SingleMove(Piece.MrX.MRX, u, t, v);
                                 mrXMoves.add(movePerformed);
                                 //If double moves are possible, do something similar again
-                                if(tb.getCount(Ticket.DOUBLE) > 0){
-                                    //Advance to get updated TicketBoard
-                                    Board advanced = ((BoardToGameState)board).forceAdvance(movePerformed);
-                                    Board.TicketBoard doubleTicketBoard = advanced.getPlayerTickets(Piece.MrX.MRX).get();
-                                    //Each neighbour of w can be reached from u in a double move
-                                    for(int w : graph.adjacentNodes(v)){
-                                        List<Ticket> ticketsUsedInDoubleMove = graph.edgeValue(v, w).get().asList()
-                                                .stream().map(ScotlandYard.Transport::requiredTicket).collect(Collectors.toList());
-                                        for(Ticket r : ticketsUsedInDoubleMove){
-                                            if(doubleTicketBoard.getCount(r) > 0){
+                                if(canDoubleMove){
+                                    int[] secondNeighbours = graph.neighbours(v);
+                                    byte[] secondTransports = graph.transports(v);
+                                    //Each neighbour of v can be reached from u in a double move
+                                    for(int j = 0; j < secondNeighbours.length; j++){
+                                        int w = secondNeighbours[j];
+                                        for(Transport sr : Transport.values()){
+                                            if((secondTransports[j] & CompiledGraph.transportBit(sr)) == 0)
+                                                continue;
+                                            Ticket r = sr.requiredTicket();
+                                            //t has already been spent on the first half of the move
+                                            int countAfterFirstMove = tb.getCount(r) - (r == t ? 1 : 0);
+                                            if(countAfterFirstMove > 0){
                                                 Move doubleMovePerformed = new DoubleMove(Piece.MrX.MRX, u, t, v, r, w);
                                                 mrXMoves.add(doubleMovePerformed);
                                             }
@@ -383,18 +413,74 @@ public class MiniMaxAI implements Ai {
         return mrXMoves;
     }
 
+    /**
+     * @param location a node
+     * @param targets the nodes to measure to
+     * @return the distance from location to the nearest of targets
+     */
+    private int distanceToNearest(int location, int[] targets){
+        int nearest = Integer.MAX_VALUE;
+        for(int x : targets)
+            nearest = Integer.min(nearest, distances.distance(location, x));
+        return nearest;
+    }
+
+    /**
+     * @param board the current gamestate
+     * @param moves Mr X's moves from board, sorted in place
+     * @param ply how many plies below the root board is
+     * @return moves, with the killer moves at ply first, then those with the best history, then those furthest
+     *         from the detectives
+     */
+    private List<Move> orderMrXMoves(Board board, List<Move> moves, int ply){
+        BoardToGameState state = (BoardToGameState)board;
+        List<Integer> locations = new ArrayList<>();
+        for(Piece p : board.getPlayers()){
+            if(p.isDetective() && state.detectiveLocation((Piece.Detective)p) != -1)
+                locations.add(state.detectiveLocation((Piece.Detective)p));
+        }
+        int[] detectives = Ints.toArray(locations);
+        Comparator<Move> byDistance =
+                Comparator.comparingInt(m -> distanceToNearest(m.visit(destinationVisitor), detectives));
+        moves.sort(ordering.byKillersThenHistory(ply, moves).thenComparing(byDistance.reversed()));
+        return moves;
+    }
+
     /**
      * @param board the current gamestate
-     * @return the list of moves it would be sensible for the detectives to take
+     * @param belief where the detectives think Mr X could be
+     * @param ply how many plies below the root board is
+     * @return the combinations of moves it would be sensible for the detectives to take, generated as they are
+     *         iterated over. The killer moves at ply are tried first, then each detective's moves with the best
+     *         history, then those towards Mr X
      */
-    private List<List<Move>> getDetectiveMoves(Board board){
+    private Iterable<List<Move>> getDetectiveMoves(Board board, MrXBelief belief, int ply){
         Map<Piece, List<Move>> moveMap = cullExpensiveMoves(makeMoveMap(board));
-        List<List<Move>> moveLists = permutations(moveMap);
-        //Removes all move permutations where two or more detectives share the same destination
-        moveLists.removeIf(
-                x -> x.stream().map(y -> y.visit(destinationVisitor)).distinct().count() != x.size()
-        );
-        return moveLists;
+        //Head for Mr X himself if his location is known
+        int knownLocation = ((BoardToGameState)board).mrXLocation();
+        int[] targets = knownLocation != -1 ? new int[]{knownLocation} : belief.nodes();
+        List<List<Move>> playerMoves = new ArrayList<>();
+        for(List<Move> moves : moveMap.values()){
+            List<Move> ordered = new ArrayList<>(moves);
+            Comparator<Move> order = ordering.byHistory(moves);
+            if(targets.length != 0)
+                order = order.thenComparingInt(m -> distanceToNearest(m.visit(destinationVisitor), targets));
+            ordered.sort(order);
+            playerMoves.add(ordered);
+        }
+        //Only killers every detective can still make here, in the order combinations are generated in
+        List<List<Move>> killers = new ArrayList<>();
+        for(List<Move> killer : ordering.killers(ply)){
+            boolean available = killer.size() == playerMoves.size();
+            for(int i = 0; available && i < killer.size(); i++)
+                available = playerMoves.get(i).contains(killer.get(i));
+            if(available)
+                killers.add(killer);
+        }
+        if(killers.isEmpty())
+            return new DetectiveMoves(playerMoves);
+        return Iterables.concat(killers,
+                Iterables.filter(new DetectiveMoves(playerMoves), moves -> !killers.contains(moves)));
     }
 
     /**
@@ -405,41 +491,78 @@ public class MiniMaxAI implements Ai {
      * @param depth how many levels further to go down tree
      * @param maximising whose turn it is at that level in the gametree
      * @param player who is making the move
-     * @param clock object to track how long execution is taking
-     * @return a gametree where tree.root() is the current board, and its score corresponds to the score of its child
-     *         with the best move to take
+     * @param deadline when the search has to stop
+     * @param tree the tree to record the search in
+     * @param node the node of tree holding board, or GameTree.NONE if it is deeper than tree keeps
+     * @return the board's score, which corresponds to the score of its child with the best move to take
      */
-    private Tree buildTree(Board board, List<Move> incidentMoves, ImmutableList<Integer> possibleMrXLocations,
-                           int alpha, int beta, int depth,
-                           boolean maximising, boolean player, Clock clock){
-        Tree newTree = new MyTree(board);
-        if(depth == 0 || !board.getWinner().isEmpty())
-            return evaluateLeaf(board, incidentMoves, player, possibleMrXLocations, clock);
+    private int buildTree(GameTree tree, int node, Board board, List<Move> incidentMoves, MrXBelief belief,
+                          MrXDistribution distribution, int alpha, int beta, int depth, int ply,
+                          boolean maximising, boolean player, Deadline deadline){
+        int score = searchNode(tree, node, board, incidentMoves, belief, distribution, alpha, beta, depth, ply,
+                maximising, player, deadline);
+        if(node != GameTree.NONE)
+            tree.setScore(node, score);
+        return score;
+    }
+
+    private int searchNode(GameTree tree, int node, Board board, List<Move> incidentMoves, MrXBelief belief,
+                           MrXDistribution distribution, int alpha, int beta, int depth, int ply,
+                           boolean maximising, boolean player, Deadline deadline){
+        //Once out of time, score nodes as they are so the search unwinds straight away
+        //Checked first so every node, leaves included, counts towards the deadline's sampling
+        if(deadline.isExpired() || depth == 0 || !board.getWinner().isEmpty())
+            return evaluateLeaf(board, incidentMoves, player, belief, distribution);
+        //Positions already searched at least this deep don't need searching again
+        long hash = Zobrist.hash(board, ((BoardToGameState)board).mrXLocation(), belief, distribution,
+                maximising, player);
+        long entry = table.probe(hash);
+        if(entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= depth){
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if(bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha))
+                return score;
+        }
+        final int originalAlpha = alpha;
+        final int originalBeta = beta;
+        int score;
         if(maximising){
             int maxEval = Integer.MIN_VALUE;
-            List<Move> mrXMoves = getMrXMoves(board, player, possibleMrXLocations);
+            List<Move> mrXMoves = getMrXMoves(board, player, belief);
             if(mrXMoves.isEmpty())
-                return evaluateLeaf(board, incidentMoves, player, possibleMrXLocations, clock);
+                return evaluateLeaf(board, incidentMoves, player, belief, distribution);
+            orderMrXMoves(board, mrXMoves, ply);
+            MrXDistribution next = distribution == null ? null : distribution.child();
             for(Move m : mrXMoves){
                 Board advanced;
                 if(player) advanced = ((BoardToGameState)board).advance(m);
                 else advanced = ((BoardToGameState)board).forceAdvance(m);
-                ImmutableList<Integer> newPossibleMrXLocations = getPossibleMrXLocations(advanced, possibleMrXLocations, m);
-                Tree branch = buildTree(advanced, List.of(m), newPossibleMrXLocations,
-                        alpha, beta,depth - 1, false, player, clock);
-                int eval = branch.root().score();
+                MrXBelief newBelief = belief.after(advanced, board.getMrXTravelLog().size());
+                if(next != null){
+                    next.set(distribution);
+                    next.follow(advanced, board.getMrXTravelLog().size());
+                }
+                List<Move> edge = List.of(m);
+                int eval = buildTree(tree, tree.addChild(node, edge, advanced), advanced, edge, newBelief, next,
+                        alpha, beta, depth - 1, ply + 1, false, player, deadline);
                 maxEval = Integer.max(maxEval, eval);
                 alpha = Integer.max(alpha, eval);
-                newTree.addTree(branch, m);
-                if(alpha >= beta) break;
-                if(clock.checkLimit()) break;
+                if(alpha >= beta){
+                    ordering.cutoff(ply, edge, depth);
+                    break;
+                }
+                if(deadline.isExpired()) break;
             }
-            newTree.root().setScore(maxEval);
+            score = maxEval;
         }
         else{
             int minEval = Integer.MAX_VALUE;
-            List<List<Move>> detectiveMoves = getDetectiveMoves(board);
-            for(List<Move> moves : detectiveMoves){
+            MrXDistribution next = distribution == null ? null : distribution.child();
+            for(List<Move> moves : getDetectiveMoves(board, belief, ply)){
+                //Checked before advancing, as that is most of the work for each combination
+                if(deadline.isExpired()) break;
                 boolean isMoveValid = true;
                 GameState advanced = (GameState)board;
                 for(Move m : moves){
@@ -447,87 +570,403 @@ public class MiniMaxAI implements Ai {
                     catch (IllegalArgumentException e){ isMoveValid = false; }
                 }
                 if(isMoveValid) {
-                    Tree branch = buildTree(advanced, moves, possibleMrXLocations,
-                            alpha, beta, depth - 1, true, player, clock);
-                    int eval = branch.root().score();
+                    //A detective landing on a node shows Mr X isn't there
+                    if(next != null){
+                        next.set(distribution);
+                        next.removeDetectives(advanced);
+                    }
+                    int eval = buildTree(tree, tree.addChild(node, moves, advanced), advanced, moves,
+                            belief.withoutDetectives(advanced), next, alpha, beta, depth - 1, ply + 1, true, player,
+                            deadline);
                     minEval = Integer.min(minEval, eval);
                     beta = Integer.min(beta, eval);
-                    newTree.addTree(branch, moves);
-                    if (alpha >= beta) break;
-                    if(clock.checkLimit()) break;
+                    if (alpha >= beta){
+                        ordering.cutoff(ply, moves, depth);
+                        break;
+                    }
                 }
             }
-            newTree.root().setScore(minEval);
+            score = minEval;
         }
-        return newTree;
+        //A search cut short by the deadline isn't worth keeping
+        if(!deadline.isExpired()){
+            int bound = TranspositionTable.EXACT;
+            if(score <= originalAlpha) bound = TranspositionTable.UPPER;
+            else if(score >= originalBeta) bound = TranspositionTable.LOWER;
+            table.store(hash, depth, score, bound);
+        }
+        return score;
     }
 
     /**
      * @param board the current gamestate
-     * @param t the current tree
-     * @param incidentMoves the move used to reach the current gamestate
-     * @param depth how many levels further to go down tree
-     * @param maximising whose turn it is at the current depth
+     * @param belief where the detectives think Mr X could be
+     * @param distribution how likely Mr X is to be on each node, null in Mr X's search
+     * @param maximising whose turn it is at board
      * @param player who is making the move
-     * @param clock measures how long updateTree has been running. If too long, ends early
-     * @return an updated gametree without wasting the tree build in the previous turn
+     * @param deadline when the search has to stop
+     * @return every child of board worth searching, in the order buildTree would search them. Only those found
+     *         before the deadline if it has passed
      */
-    Tree updateTree(Board board, Tree t, List<Move> incidentMoves, int depth,
-                    boolean maximising, boolean player, Clock clock){
-        if(depth == TREE_DEPTH){
-            if(t != null) {
-                Node newNode = t.findChild(board);
-                if(newNode != null) {
-                    t = MyTree.subTree(newNode);
-                    //Remove any leftover speculative moves from detective turn
-                    if(player){
-                        Tree newTree = MyTree.subTree(newNode);
-                        for(var e : t.root().edges().entrySet()){
-                            if(e.getValue().get(0).source() != mrXLocation)
-                                newTree.root().edges().remove(e.getKey());
-                        }
-                        t = newTree;
-                    }
+    private List<Branch> getBranches(Board board, MrXBelief belief, MrXDistribution distribution,
+                                     boolean maximising, boolean player, Deadline deadline){
+        List<Branch> branches = new ArrayList<>();
+        if(maximising){
+            for(Move m : getMrXMoves(board, player, belief)){
+                Board advanced;
+                if(player) advanced = ((BoardToGameState)board).advance(m);
+                else advanced = ((BoardToGameState)board).forceAdvance(m);
+                MrXDistribution next = distribution == null ? null : distribution.copy();
+                if(next != null)
+                    next.follow(advanced, board.getMrXTravelLog().size());
+                branches.add(new Branch(List.of(m), advanced, belief.after(advanced, board.getMrXTravelLog().size()),
+                        next));
+            }
+        }
+        else{
+            for(List<Move> moves : getDetectiveMoves(board, belief, 0)){
+                //There can be thousands of combinations, each of which has to be advanced
+                if(deadline.isExpired()) break;
+                GameState advanced = (GameState)board;
+                try{
+                    for(Move m : moves)
+                        advanced = advanced.advance(m);
                 }
-                else
-                    t = null;
+                catch(IllegalArgumentException e){ continue; }
+                MrXDistribution next = distribution == null ? null : distribution.copy();
+                if(next != null)
+                    next.removeDetectives(advanced);
+                branches.add(new Branch(moves, advanced, belief.withoutDetectives(advanced), next));
+            }
+        }
+        return branches;
+    }
+
+    /**
+     * @param branches the root's children
+     * @param previous the tree from the last search of the root, or null if there isn't one
+     * @param maximising whose turn it is at the root
+     * @return branches, ordered so the best in previous come first. Branches previous doesn't have go last
+     */
+    private List<Branch> orderBranches(List<Branch> branches, GameTree previous, boolean maximising){
+        if(previous == null)
+            return branches;
+        Map<List<Move>, Integer> previousScores = new HashMap<>();
+        for(int c = previous.firstChild(previous.root()); c != GameTree.NONE; c = previous.nextSibling(c))
+            previousScores.put(previous.moves(c), previous.score(c));
+        Comparator<Branch> byScore = Comparator.comparingInt(b -> previousScores.getOrDefault(b.moves, 0));
+        if(maximising)
+            byScore = byScore.reversed();
+        List<Branch> ordered = new ArrayList<>(branches);
+        //Stable, so branches with equal scores keep the order they were generated in
+        ordered.sort(Comparator.comparing((Branch b) -> !previousScores.containsKey(b.moves)).thenComparing(byScore));
+        return ordered;
+    }
+
+    /**
+     * Searches the root's children in the order given by previous. The first child is searched alone to get a bound,
+     * then the rest are searched starting from the best bound found so far, split between the pool's threads
+     * if there is a pool
+     * @param board the current gamestate
+     * @param belief where the detectives think Mr X could be
+     * @param distribution how likely Mr X is to be on each node, null in Mr X's search
+     * @param depth how many levels further to go down tree
+     * @param maximising whose turn it is at the root
+     * @param player who is making the move
+     * @param deadline when the search has to stop
+     * @param previous the tree from the last search of the root, used to order its children. May be null
+     * @return a gametree where tree.root() is the current board, scored as buildTree would
+     */
+    private GameTree searchRoot(Board board, MrXBelief belief, MrXDistribution distribution, int depth,
+                                boolean maximising, boolean player, Deadline deadline, GameTree previous){
+        GameTree newTree = new GameTree(board, RETAINED_DEPTH, maximising);
+        if(depth == 0 || !board.getWinner().isEmpty()){
+            buildTree(newTree, newTree.root(), board, null, belief, distribution, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE, depth, 0, maximising, player, deadline);
+            return newTree;
+        }
+        List<Branch> branches = orderBranches(getBranches(board, belief, distribution, maximising, player, deadline),
+                previous, maximising);
+        if(branches.isEmpty()){
+            buildTree(newTree, newTree.root(), board, null, belief, distribution, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE, depth, 0, maximising, player, deadline);
+            return newTree;
+        }
+        //The root's child made from each branch, NONE for any not searched
+        int[] children = new int[branches.size()];
+        Arrays.fill(children, GameTree.NONE);
+        Branch first = branches.get(0);
+        children[0] = newTree.addChild(newTree.root(), first.moves, first.board);
+        int firstScore = buildTree(newTree, children[0], first.board, first.moves, first.belief, first.distribution,
+                Integer.MIN_VALUE, Integer.MAX_VALUE, depth - 1, 1, !maximising, player, deadline);
+        RootBound bound = new RootBound(maximising, firstScore);
+        //onTerminate can clear the field while searching
+        ForkJoinPool pool = this.pool;
+        if(pool == null){
+            for(int i = 1; i < branches.size(); i++){
+                if(deadline.isExpired()) break;
+                Branch b = branches.get(i);
+                children[i] = newTree.addChild(newTree.root(), b.moves, b.board);
+                searchBranch(b, i, newTree, children[i], bound, depth, maximising, player, deadline);
             }
-            if(t == null)
-                return buildTree(board, incidentMoves, possibleMrXLocations,
-                        Integer.MIN_VALUE, Integer.MAX_VALUE, depth,
-                        maximising, player, clock);
-        }
-        Tree newTree = new MyTree(t.root());
-        if(t.root().edges().size() == 0 && depth != 0){
-            return buildTree(t.root().board(), incidentMoves, possibleMrXLocations,
-                    Integer.MIN_VALUE, Integer.MAX_VALUE, depth,
-                    maximising, player, clock);
-        }
-        if(depth == 0)
-            return t;
+        }
         else{
-            for(var e : t.root().edges().entrySet()){
-                Node n = e.getKey();
-                List<Move> moves = e.getValue();
-                Tree newBranch = MyTree.subTree(n);
-                newBranch = updateTree(newBranch.root().board(), newBranch, moves, depth - 1,
-                        !maximising, player, clock);
-                newTree.addTree(newBranch, moves);
-                if(clock.checkLimit()) break;
+            //Each branch is searched into a tree of its own, as trees can only be changed by one thread at a time
+            List<ForkJoinTask<GameTree>> tasks = new ArrayList<>();
+            try{
+                for(int i = 1; i < branches.size(); i++){
+                    final int index = i;
+                    Branch b = branches.get(i);
+                    tasks.add(pool.submit(() -> {
+                        if(deadline.isExpired())
+                            return null;
+                        GameTree branch = new GameTree(b.board, RETAINED_DEPTH - 1, !maximising);
+                        searchBranch(b, index, branch, branch.root(), bound, depth, maximising, player, deadline);
+                        return branch;
+                    }));
+                }
+            }
+            catch(RejectedExecutionException e){
+                //The pool was shut down by onTerminate, so keep what has been searched already
             }
-            //Update score of root node
-            int bestScore = maximising ? Integer.MIN_VALUE : Integer.MAX_VALUE;
-            for(var e : newTree.root().edges().entrySet()){
-                if(maximising)
-                    bestScore = Integer.max(bestScore, e.getKey().score());
-                else
-                    bestScore = Integer.min(bestScore, e.getKey().score());
+            for(int i = 0; i < tasks.size(); i++){
+                GameTree branch;
+                try{ branch = tasks.get(i).join(); }
+                catch(CancellationException e){ branch = null; }
+                if(branch != null)
+                    children[i + 1] = newTree.graft(newTree.root(), branches.get(i + 1).moves, branch, branch.root());
             }
-            newTree.root().setScore(bestScore);
         }
+        newTree.setScore(newTree.root(), bound.score());
+        //Branches can finish in any order, so one that fails against a bound raised after it started can tie with
+        //the best score. Only the branch that set the bound is known to have it
+        newTree.setBestChild(children[bound.branch()]);
         return newTree;
     }
 
+    //Searches one of the root's children into node of tree with the shared bound, then offers the bound its score
+    private void searchBranch(Branch b, int index, GameTree tree, int node, RootBound bound, int depth,
+                              boolean maximising, boolean player, Deadline deadline){
+        int alpha = maximising ? bound.score() : Integer.MIN_VALUE;
+        int beta = maximising ? Integer.MAX_VALUE : bound.score();
+        int eval = buildTree(tree, node, b.board, b.moves, b.belief, b.distribution,
+                alpha, beta, depth - 1, 1, !maximising, player, deadline);
+        bound.offer(eval, index);
+    }
+
+    /**
+     * @param possible every location Mr X could be in
+     * @param weight how likely Mr X is to be on each location, not necessarily adding up to 1
+     * @param n how many to pick
+     * @param random picks the locations
+     * @return n of the possible locations, picked at random without repeats, or all of them if there aren't n.
+     *         Each pick is made in proportion to weight among the locations not picked yet, or evenly between them
+     *         once they all weigh nothing
+     */
+    static List<Integer> sampleMrXLocations(List<Integer> possible, IntToDoubleFunction weight, int n,
+                                            Random random){
+        List<Integer> left = new ArrayList<>(possible);
+        if(left.size() <= n)
+            return left;
+        double[] weights = new double[left.size()];
+        for(int i = 0; i < weights.length; i++)
+            weights[i] = Double.max(0, weight.applyAsDouble(left.get(i)));
+        List<Integer> samples = new ArrayList<>(n);
+        for(int size = left.size(); samples.size() < n; size--){
+            double total = 0;
+            for(int i = 0; i < size; i++)
+                total += weights[i];
+            int picked = -1;
+            if(total > 0){
+                double r = random.nextDouble() * total;
+                //Falls back on the last location with any weight if rounding leaves r just above 0
+                for(int i = 0; i < size && r >= 0; i++){
+                    if(weights[i] > 0){
+                        picked = i;
+                        r -= weights[i];
+                    }
+                }
+            }
+            else
+                picked = random.nextInt(size);
+            samples.add(left.get(picked));
+            //The last location not picked yet takes the picked one's place
+            left.set(picked, left.get(size - 1));
+            weights[picked] = weights[size - 1];
+        }
+        return samples;
+    }
+
+    /**
+     * Looks for each state among the trees kept from the last turn's guesses, as {@link #findPreviousTree} does for
+     * the single tree. As the detectives' boards don't say where Mr X is, a tree searched from one guess can be
+     * found for another, which only matters to the order the new search tries moves in
+     * @param states the boards each guess at Mr X's location will be searched from
+     * @return for each state, a kept tree re-rooted at it, or null if none has it. Each tree is given to one state
+     *         at most, as they are searched on different threads
+     */
+    GameTree[] findPreviousSampleTrees(Board[] states){
+        GameTree[] previous = new GameTree[states.length];
+        if(sampleTrees == null)
+            return previous;
+        List<GameTree> unused = new ArrayList<>(sampleTrees);
+        sampleTrees = null;
+        for(int i = 0; i < states.length; i++){
+            for(Iterator<GameTree> it = unused.iterator(); it.hasNext();){
+                GameTree tree = it.next();
+                int node = tree.findChild(states[i]);
+                if(node != GameTree.NONE){
+                    tree.reRoot(node);
+                    previous[i] = tree;
+                    it.remove();
+                    break;
+                }
+            }
+        }
+        return previous;
+    }
+
+    //Searches each guess at Mr X's location to depth, in parallel if there is a pool
+    private GameTree[] searchSamples(Board[] states, MrXBelief[] beliefs, MrXDistribution[] distributions, int depth,
+                                     Deadline deadline, GameTree[] previous){
+        GameTree[] trees = new GameTree[states.length];
+        //onTerminate can clear the field while searching
+        ForkJoinPool pool = this.pool;
+        if(pool == null){
+            for(int i = 0; i < states.length; i++)
+                trees[i] = searchRoot(states[i], beliefs[i], distributions[i], depth, false, false, deadline,
+                        previous == null ? null : previous[i]);
+            return trees;
+        }
+        List<ForkJoinTask<GameTree>> tasks = new ArrayList<>();
+        try{
+            for(int i = 0; i < states.length; i++){
+                final int sample = i;
+                tasks.add(pool.submit(() -> searchRoot(states[sample], beliefs[sample], distributions[sample], depth,
+                        false, false, deadline, previous == null ? null : previous[sample])));
+            }
+        }
+        catch(RejectedExecutionException e){
+            //The pool was shut down by onTerminate, so keep what has been searched already
+        }
+        for(int i = 0; i < tasks.size(); i++){
+            try{ trees[i] = tasks.get(i).join(); }
+            catch(CancellationException e){ trees[i] = null; }
+        }
+        return trees;
+    }
+
+    /**
+     * Searches the detectives' moves once for each of a few guesses at where Mr X is, with each search knowing
+     * where he is, rather than searching moves from every possible location in one tree. Each guess's tree is kept
+     * for the next turn, as the single tree is, to order that turn's searches by
+     * @param board the current board
+     * @param remaining the detectives still to move this round
+     * @param deadline when the search has to stop
+     * @return the moves found best in the most guesses, or null if nothing was searched
+     */
+    private List<Move> pickDeterminizedMoves(Board board, List<Piece> remaining, Deadline deadline){
+        MrXBelief belief = MrXBelief.fromLog(board);
+        CompiledGraph graph = CompiledGraph.of(board.getSetup().graph);
+        //Seeded from the position, so the same board is always searched with the same guesses
+        Random random = new Random(Zobrist.hash(board, -1, belief, null, false, false));
+        //More likely locations are more likely to be searched
+        MrXDistribution likelihood = MrXDistribution.fromLog(board);
+        List<Integer> samples = sampleMrXLocations(Ints.asList(belief.nodes()), likelihood::probability,
+                determinizations, random);
+        Board[] states = new Board[samples.size()];
+        MrXBelief[] beliefs = new MrXBelief[samples.size()];
+        MrXDistribution[] distributions = new MrXDistribution[samples.size()];
+        for(int i = 0; i < states.length; i++){
+            beliefs[i] = MrXBelief.of(graph, List.of(samples.get(i)));
+            states[i] = new BoardToGameState(board, remaining, samples.get(i), beliefs[i]);
+            distributions[i] = MrXDistribution.of(graph, beliefs[i]);
+        }
+        //Every guess is searched to each depth before going deeper, so they all get the same share of the time
+        GameTree[] previous = findPreviousSampleTrees(states);
+        GameTree[] trees = null;
+        for(int depth = 1; depth <= MAX_TREE_DEPTH; depth++){
+            GameTree[] searched = searchSamples(states, beliefs, distributions, depth, deadline,
+                    trees == null ? previous : trees);
+            if(trees != null && deadline.isExpired())
+                break;
+            trees = searched;
+            if(deadline.isSoftExpired())
+                break;
+        }
+        List<Move> best = voteOnMoves(trees == null ? new GameTree[0] : trees);
+        //Kept from the moves played, for the next turn's searches to find the position after Mr X's move in
+        if(best != null){
+            sampleTrees = new ArrayList<>();
+            for(GameTree t : trees){
+                if(t == null)
+                    continue;
+                for(int c = t.firstChild(t.root()); c != GameTree.NONE; c = t.nextSibling(c)){
+                    if(t.moves(c).equals(best)){
+                        t.reRoot(c);
+                        sampleTrees.add(t);
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Each guess's search only scores its best child exactly, as the rest are cut off as soon as they are shown
+     * to be worse, so their scores are bounds that can't be compared between guesses. Each guess instead votes
+     * for its best child's moves
+     * @param trees the detectives' searched trees, one per guess. Any may be null
+     * @return the moves with the most votes, then the lowest exact score averaged over the guesses that voted for
+     *         them, or null if no tree has a best child
+     */
+    static List<Move> voteOnMoves(GameTree[] trees){
+        //Number of votes and total score of the guesses that voted for each set of moves
+        Map<List<Move>, double[]> votes = new LinkedHashMap<>();
+        for(GameTree t : trees){
+            if(t == null || t.bestChild() == GameTree.NONE)
+                continue;
+            double[] vote = votes.computeIfAbsent(t.moves(t.bestChild()), k -> new double[2]);
+            vote[0]++;
+            vote[1] += t.score(t.bestChild());
+        }
+        List<Move> best = null;
+        double[] bestVote = null;
+        for(var e : votes.entrySet()){
+            double[] vote = e.getValue();
+            if(bestVote == null || vote[0] > bestVote[0]
+                    || (vote[0] == bestVote[0] && vote[1] / vote[0] < bestVote[1] / bestVote[0])){
+                best = e.getKey();
+                bestVote = vote;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param board the current gamestate
+     * @param player who is making the move
+     * @return the tree kept from the last turn, re-rooted at board, or null if it doesn't have board
+     */
+    GameTree findPreviousTree(Board board, boolean player){
+        if(gameTree == null)
+            return null;
+        int newNode = gameTree.findChild(board);
+        if(newNode == GameTree.NONE)
+            return null;
+        gameTree.reRoot(newNode);
+        //Remove any leftover speculative moves from detective turn
+        if(player){
+            int root = gameTree.root();
+            for(int c = gameTree.firstChild(root); c != GameTree.NONE; c = gameTree.nextSibling(c)){
+                if(gameTree.moves(c).get(0).source() != mrXLocation)
+                    gameTree.removeChild(root, c);
+            }
+        }
+        return gameTree;
+    }
+
     /**
      * @return an incredibly inventive AI name
      */
@@ -556,31 +995,65 @@ public class MiniMaxAI implements Ai {
             Move chosenMove = moveQueue.poll();
             return chosenMove;
         }
-        Clock clock = new Clock(TIME_LIMIT);
+        double timeLimit = Double.parseDouble(System.getProperty(TIME_LIMIT_PROPERTY, Double.toString(TIME_LIMIT)));
+        Deadline deadline = Deadline.forMove(board.getSetup(), board.getMrXTravelLog().size(), timeLimit, terminate);
+        currentDeadline = deadline;
         boolean player = board.getAvailableMoves().stream().allMatch(x -> x.commencedBy().isMrX());
         if(!player) mrXLocation = -1;
         else mrXLocation = board.getAvailableMoves().asList().get(0).source();
-        Board gameState = new BoardToGameState(board, findRemaining(board), mrXLocation);
-        gameTree = updateTree(gameState, gameTree, null, TREE_DEPTH,
-                player, player, clock);
-        Move chosenMove = null;
-        int score = gameTree.root().score();
-        for(var e : gameTree.root().edges().entrySet()){
-            if(e.getKey().score() == score){
-                if(!player){
-                    moveQueue.addAll(e.getValue());
-                    chosenMove = moveQueue.poll();
-                }
-                else{
-                    assert(e.getValue().size() == 1);
-                    chosenMove = e.getValue().get(0);
-                    mrXLocation = chosenMove.visit(destinationVisitor);
-                    possibleMrXLocations = getPossibleMrXLocations(e.getKey().board(), possibleMrXLocations, chosenMove);
-                }
-                gameTree = MyTree.subTree(e.getKey());
+        table.nextSearch();
+        ordering.nextSearch();
+        if(!player && determinizations > 0){
+            List<Move> moves = pickDeterminizedMoves(board, findRemaining(board), deadline);
+            currentDeadline = null;
+            gameTree = null;
+            //Only null if stopped before anything was searched
+            if(moves == null)
+                return board.getAvailableMoves().asList().get(0);
+            moveQueue.addAll(moves);
+            return moveQueue.poll();
+        }
+        MrXBelief belief = MrXBelief.fromLog(board);
+        Board gameState = new BoardToGameState(board, findRemaining(board), mrXLocation, belief);
+        //Only the detectives' search needs to weigh up where Mr X is likely to be
+        MrXDistribution distribution = player ? null : MrXDistribution.fromLog(board);
+        GameTree previous = findPreviousTree(gameState, player);
+        //Search one level deeper each time, ordered by the last search. A search cut short by the deadline
+        //may be missing the best move, so only the last complete one is used. No new depth is started once
+        //past the soft limit, as it would most likely be cut short
+        gameTree = null;
+        for(int depth = 1; depth <= MAX_TREE_DEPTH; depth++){
+            GameTree tree = searchRoot(gameState, belief, distribution, depth, player, player, deadline, previous);
+            if(gameTree != null && deadline.isExpired())
+                break;
+            gameTree = tree;
+            previous = tree;
+            if(deadline.isSoftExpired() || tree.isLeaf(tree.root()))
                 break;
+        }
+        Move chosenMove = null;
+        int c = gameTree.bestChild();
+        if(c != GameTree.NONE){
+            List<Move> moves = gameTree.moves(c);
+            if(!player){
+                moveQueue.addAll(moves);
+                chosenMove = moveQueue.poll();
             }
+            else{
+                assert(moves.size() == 1);
+                chosenMove = moves.get(0);
+                mrXLocation = chosenMove.visit(destinationVisitor);
+            }
+            gameTree.reRoot(c);
+        }
+        currentDeadline = null;
+        //Only possible if stopped before anything was searched
+        if(chosenMove == null){
+            gameTree = null;
+            chosenMove = board.getAvailableMoves().asList().get(0);
+            if(player)
+                mrXLocation = chosenMove.visit(destinationVisitor);
         }
         return chosenMove;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import uk.ac.bris.cs.scotlandyard.model.*;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Board.TicketBoard;
+import uk.ac.bris.cs.scotlandyard.model.Move.*;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An Ai which picks moves with Monte Carlo tree search.
+ * <br>
+ * Each playout walks down the tree with UCT, adds one new node, then plays the rest of the game out with quick,
+ * mostly greedy moves on a {@link CompactGameStateFactory} state. Detectives don't know where Mr X is, so every
+ * playout starts from a guess at his location, picked from the places his travel log says he could be.
+ * Playouts run in parallel on every thread, and the part of the tree below the move picked is kept for the next turn.
+ */
+public class MonteCarloAI implements Ai {
+
+    //How much UCT favours moves that have been tried less
+    final double EXPLORATION = 0.7;
+    //Chance of a playout move being picked at random instead of greedily
+    final double PLAYOUT_RANDOMNESS = 0.25;
+    //The amount of time the move selection is allowed to run for, unless set with MiniMaxAI.TIME_LIMIT_PROPERTY
+    final double TIME_LIMIT = 29;
+
+    //Number of threads playouts are split between, set with MiniMaxAI.THREADS_PROPERTY
+    final int threads;
+    //Runs playouts in parallel; null when only one thread is used
+    volatile ForkJoinPool pool;
+    //The deadline of the search in progress, so onTerminate can stop it. null between searches
+    volatile Deadline currentDeadline;
+
+    private final CompactGameStateFactory factory = new CompactGameStateFactory();
+    private DistanceTable distances;
+    //The tree kept from the last turn, rooted at the position just after the move picked
+    private MonteCarloNode tree;
+    //The position tree is rooted at, used to work out what has happened since
+    private GameState treeState;
+
+    public MonteCarloAI(){
+        this(Integer.getInteger(MiniMaxAI.THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param threads how many threads to run playouts on
+     */
+    public MonteCarloAI(int threads){
+        this.threads = Integer.max(1, threads);
+    }
+
+    @Nonnull @Override
+    public String name(){
+        return "Monte Carlo";
+    }
+
+    @Override
+    public void onStart(){
+        tree = null;
+        treeState = null;
+        if(threads > 1 && pool == null)
+            pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Stops any search in progress and the search threads
+     */
+    @Override
+    public void onTerminate(){
+        Deadline deadline = currentDeadline;
+        if(deadline != null)
+            deadline.cancel();
+        ForkJoinPool oldPool = pool;
+        pool = null;
+        if(oldPool != null)
+            oldPool.shutdownNow();
+    }
+
+    /**
+     * @param board the current board
+     * @return the part of the last turn's tree that starts at board, or a new tree if there isn't one
+     */
+    private MonteCarloNode findPreviousTree(Board board){
+        if(tree == null || treeState.getMrXTravelLog().size() != board.getMrXTravelLog().size())
+            return new MonteCarloNode(null);
+        //Only detectives can have moved since, and each one's move can be told from what changed
+        List<Move> moves = new ArrayList<>();
+        for(Piece p : board.getPlayers()){
+            if(p.isMrX())
+                continue;
+            Detective d = (Detective)p;
+            int from = treeState.getDetectiveLocation(d).orElseThrow();
+            int to = board.getDetectiveLocation(d).orElseThrow();
+            if(from == to)
+                continue;
+            TicketBoard before = treeState.getPlayerTickets(d).orElseThrow();
+            TicketBoard after = board.getPlayerTickets(d).orElseThrow();
+            for(Ticket t : Ticket.values()){
+                if(after.getCount(t) < before.getCount(t))
+                    moves.add(new SingleMove(d, from, t, to));
+            }
+        }
+        MonteCarloNode node = tree;
+        while(!moves.isEmpty()){
+            MonteCarloNode child = null;
+            for(Move m : moves){
+                child = node.child(m);
+                if(child != null){
+                    moves.remove(m);
+                    break;
+                }
+            }
+            if(child == null)
+                return new MonteCarloNode(null);
+            node = child;
+        }
+        return node;
+    }
+
+    //Mr X heads away from the nearest detective, detectives head towards Mr X
+    private Move pickPlayoutMove(GameState state, ImmutableList<Move> moves, int mrXLocation, Random random){
+        if(random.nextDouble() < PLAYOUT_RANDOMNESS)
+            return moves.get(random.nextInt(moves.size()));
+        Move best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for(Move m : moves){
+            int score;
+            if(m.commencedBy().isMrX()){
+                //Double and secret moves are saved for the tree to decide on
+                if(!m.visit(MiniMaxAI.moveTypeVisitor) || m.visit(MiniMaxAI.secretMoveVisitor))
+                    continue;
+                int destination = m.visit(MiniMaxAI.destinationVisitor);
+                score = Integer.MAX_VALUE;
+                for(Piece p : state.getPlayers()){
+                    if(p.isDetective())
+                        score = Integer.min(score,
+                                distances.distance(state.getDetectiveLocation((Detective)p).orElseThrow(), destination));
+                }
+            }
+            //Only the first detective to move is considered, as they all get a turn before Mr X
+            else if(m.commencedBy() == moves.get(0).commencedBy())
+                score = -distances.distance(m.visit(MiniMaxAI.destinationVisitor), mrXLocation);
+            else
+                continue;
+            if(score > bestScore){
+                bestScore = score;
+                best = m;
+            }
+        }
+        return best == null ? moves.get(random.nextInt(moves.size())) : best;
+    }
+
+    /**
+     * Plays state out to the end of the game
+     * @return whether Mr X won
+     */
+    private boolean playout(GameState state, int mrXLocation, Random random){
+        while(state.getWinner().isEmpty()){
+            ImmutableList<Move> moves = state.getAvailableMoves().asList();
+            Move m = pickPlayoutMove(state, moves, mrXLocation, random);
+            if(m.commencedBy().isMrX())
+                mrXLocation = m.visit(MiniMaxAI.destinationVisitor);
+            state = state.advance(m);
+        }
+        return state.getWinner().stream().anyMatch(Piece::isMrX);
+    }
+
+    //One playout: down the tree to a new node, then to the end of the game, then back up with the result
+    private void iterate(MonteCarloNode root, GameState state, int mrXLocation, Random random){
+        List<MonteCarloNode> path = new ArrayList<>();
+        MonteCarloNode node = root;
+        while(state.getWinner().isEmpty()){
+            ImmutableSet<Move> moves = state.getAvailableMoves();
+            if(moves.isEmpty())
+                break;
+            node = node.select(moves, EXPLORATION, random);
+            path.add(node);
+            if(node.move().commencedBy().isMrX())
+                mrXLocation = node.move().visit(MiniMaxAI.destinationVisitor);
+            state = state.advance(node.move());
+            if(node.visits() == 0)
+                break;
+        }
+        boolean mrXWon = playout(state, mrXLocation, random);
+        for(MonteCarloNode n : path)
+            n.update(mrXWon);
+    }
+
+    //Runs playouts from random guesses at Mr X's location until the deadline
+    private void search(MonteCarloNode root, GameState[] states, int[] locations, Deadline deadline){
+        Random random = ThreadLocalRandom.current();
+        while(!deadline.isSoftExpired()){
+            int i = random.nextInt(states.length);
+            iterate(root, states[i], locations[i], random);
+        }
+    }
+
+    @Nonnull @Override
+    public Move pickMove(@Nonnull Board board, @Nonnull AtomicBoolean terminate){
+        double timeLimit = Double.parseDouble(System.getProperty(MiniMaxAI.TIME_LIMIT_PROPERTY,
+                Double.toString(TIME_LIMIT)));
+        Deadline deadline = Deadline.forMove(board.getSetup(), board.getMrXTravelLog().size(), timeLimit, terminate);
+        currentDeadline = deadline;
+        CompiledGraph graph = CompiledGraph.of(board.getSetup().graph);
+        distances = DistanceTable.of(board.getSetup().graph);
+        ImmutableSet<Move> available = board.getAvailableMoves();
+        Move first = available.iterator().next();
+        MrXBelief belief = first.commencedBy().isMrX() ? MrXBelief.of(graph, List.of(first.source()))
+                : MrXBelief.fromLog(board);
+        //Only possible if the log doesn't fit the graph, in which case he could be anywhere free
+        if(belief.isEmpty())
+            belief = MrXBelief.of(graph, board.getSetup().graph.nodes()).withoutDetectives(board);
+        int[] locations = belief.nodes();
+        //One starting state per place Mr X could be
+        GameState[] states = new GameState[locations.length];
+        for(int i = 0; i < states.length; i++)
+            states[i] = factory.resume(board, locations[i]);
+        MonteCarloNode root = findPreviousTree(board);
+        //onTerminate can clear the field while searching
+        ForkJoinPool pool = this.pool;
+        if(pool == null)
+            search(root, states, locations, deadline);
+        else{
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            try{
+                for(int i = 0; i < threads; i++)
+                    tasks.add(pool.submit(() -> search(root, states, locations, deadline)));
+            }
+            catch(RejectedExecutionException e){
+                //The pool was shut down by onTerminate, so keep whatever has been searched already
+            }
+            for(ForkJoinTask<?> task : tasks){
+                try{ task.join(); }
+                catch(CancellationException e){
+                    //Cancelled by onTerminate
+                }
+            }
+        }
+        currentDeadline = null;
+        Move chosenMove = root.mostVisited(available);
+        //Only possible if stopped before anything was searched
+        if(chosenMove == null)
+            chosenMove = first;
+        tree = root.child(chosenMove);
+        try{
+            treeState = states[0].advance(chosenMove);
+        }
+        catch(IllegalArgumentException e){
+            //The guess at Mr X's location ended the game, so the position can't be followed on from
+            tree = null;
+        }
+        return chosenMove;
+    }
+}
@@ -0,0 +1,134 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A node in a {@link MonteCarloAI} search tree, reached from its parent by a single move.
+ * <br>
+ * Each node counts the playouts that have gone through it and how many of them were won by whoever made its move.
+ * A detective search doesn't know where Mr X is, so which of a node's children are legal can change between
+ * playouts. Each child also counts how many times it was legal when its parent was passed through, and UCT uses
+ * that in place of the parent's visits.
+ * Nodes are shared between search threads, so they are only read or changed while holding their lock.
+ */
+public final class MonteCarloNode {
+
+    private final Move move;
+    //Children in the order they were added, keyed by the move that reaches them
+    private final Map<Move, MonteCarloNode> children = new LinkedHashMap<>();
+    private int visits;
+    private double wins;
+    private int availability;
+    //Playouts that have picked this node but not finished yet, counted as losses so other threads look elsewhere
+    private int virtualLosses;
+
+    /**
+     * @param move the move from the parent to this node, null for the root
+     */
+    public MonteCarloNode(Move move){
+        this.move = move;
+    }
+
+    /**
+     * @return the move from the parent to this node, null for the root
+     */
+    public Move move(){ return move; }
+
+    /**
+     * @return how many finished playouts have gone through this node
+     */
+    public synchronized int visits(){ return visits; }
+
+    /**
+     * Picks which child a playout goes to next, adding it if the move hasn't been tried yet.
+     * The child is given a virtual loss until {@link #update(boolean)} is called on it
+     * @param legal the moves that can be made from this node in the playout
+     * @param exploration how much UCT favours children that have been visited less
+     * @param random picks between moves that haven't been tried yet
+     * @return a new child if any legal move hasn't been tried yet, otherwise the legal child with the best UCT score
+     */
+    public synchronized MonteCarloNode select(Set<Move> legal, double exploration, Random random){
+        List<Move> untried = new ArrayList<>();
+        for(Move m : legal){
+            MonteCarloNode child = children.get(m);
+            if(child == null)
+                untried.add(m);
+            else
+                child.addAvailability();
+        }
+        MonteCarloNode chosen = null;
+        if(!untried.isEmpty()){
+            chosen = new MonteCarloNode(untried.get(random.nextInt(untried.size())));
+            chosen.addAvailability();
+            children.put(chosen.move, chosen);
+        }
+        else{
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for(Move m : legal){
+                MonteCarloNode child = children.get(m);
+                double score = child.uct(exploration);
+                if(score > bestScore){
+                    bestScore = score;
+                    chosen = child;
+                }
+            }
+        }
+        chosen.addVirtualLoss();
+        return chosen;
+    }
+
+    private synchronized double uct(double exploration){
+        int n = visits + virtualLosses;
+        if(n == 0)
+            return Double.POSITIVE_INFINITY;
+        return wins / n + exploration * Math.sqrt(Math.log(availability) / n);
+    }
+
+    //availability is read by uct under the child's lock, so it is only changed under that lock too
+    private synchronized void addAvailability(){
+        availability++;
+    }
+
+    private synchronized void addVirtualLoss(){
+        virtualLosses++;
+    }
+
+    /**
+     * Records a finished playout through this node, and takes away the virtual loss select gave it
+     * @param mrXWon whether Mr X won the playout
+     */
+    public synchronized void update(boolean mrXWon){
+        virtualLosses--;
+        visits++;
+        if(move.commencedBy().isMrX() == mrXWon)
+            wins++;
+    }
+
+    /**
+     * @param m a move from this node
+     * @return the child reached by m, or null if it hasn't been tried
+     */
+    public synchronized MonteCarloNode child(Move m){
+        return children.get(m);
+    }
+
+    /**
+     * @param legal the moves that can be made from this node
+     * @return the legal move whose child has been visited most, or null if none have been tried
+     */
+    public synchronized Move mostVisited(Set<Move> legal){
+        MonteCarloNode best = null;
+        for(MonteCarloNode child : children.values()){
+            if(legal.contains(child.move) && (best == null || child.visits() > best.visits()))
+                best = child;
+        }
+        return best == null ? null : best.move;
+    }
+}
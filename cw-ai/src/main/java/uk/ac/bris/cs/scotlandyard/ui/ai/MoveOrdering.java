@@ -0,0 +1,139 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers which moves caused alpha-beta cutoffs, so they can be tried first elsewhere in the search.
+ * <br>
+ * Killer moves are the last few moves to cause a cutoff at each ply, which are likely to cause one at their
+ * siblings' children too. The history table scores each piece moving to each node by how many cutoffs that has
+ * caused, weighted towards cutoffs found far from the leaves, so it carries over between plies.
+ * Like the {@link TranspositionTable}, it is shared by every search thread without locking.
+ */
+public final class MoveOrdering {
+
+    /**
+     * How many killer moves are kept per ply
+     */
+    public static final int KILLERS = 2;
+
+    //Destinations wrap around past this, as in Zobrist
+    private static final int NODES = 1024;
+    //Mr X, then each detective
+    private static final int PIECES = 1 + Detective.values().length;
+
+    private final int plies;
+    //KILLERS per ply, the most recent first. Each is the moves of one edge of the tree
+    private final AtomicReferenceArray<List<Move>> killers;
+    private final AtomicIntegerArray history = new AtomicIntegerArray(PIECES * NODES);
+
+    /**
+     * @param plies how many plies below the root to keep killer moves for
+     */
+    public MoveOrdering(int plies){
+        this.plies = plies;
+        this.killers = new AtomicReferenceArray<>(plies * KILLERS);
+    }
+
+    /**
+     * Marks the start of a new search. Killer moves are forgotten, as the plies are counted from a new root,
+     * and the history table is halved so that recent cutoffs count for more
+     */
+    public void nextSearch(){
+        for(int i = 0; i < killers.length(); i++)
+            killers.set(i, null);
+        for(int i = 0; i < history.length(); i++)
+            history.set(i, history.get(i) / 2);
+    }
+
+    private static int historyIndex(Move m){
+        int piece = m.commencedBy().isMrX() ? 0 : 1 + ((Detective)m.commencedBy()).ordinal();
+        int destination = m.visit(MiniMaxAI.destinationVisitor);
+        return piece * NODES + (destination & (NODES - 1));
+    }
+
+    /**
+     * Records that moves caused a cutoff
+     * @param ply how many plies below the root the moves were made
+     * @param moves the moves made
+     * @param depth how many levels were searched below them
+     */
+    public void cutoff(int ply, @Nonnull List<Move> moves, int depth){
+        if(ply < plies){
+            int first = ply * KILLERS;
+            if(!moves.equals(killers.get(first))){
+                for(int i = first + KILLERS - 1; i > first; i--)
+                    killers.set(i, killers.get(i - 1));
+                killers.set(first, moves);
+            }
+        }
+        for(Move m : moves)
+            history.addAndGet(historyIndex(m), depth * depth);
+    }
+
+    /**
+     * @param ply how many plies below the root
+     * @return the killer moves at ply, the most recent first
+     */
+    @Nonnull public List<List<Move>> killers(int ply){
+        List<List<Move>> found = new ArrayList<>(KILLERS);
+        if(ply >= plies)
+            return found;
+        for(int i = ply * KILLERS; i < (ply + 1) * KILLERS; i++){
+            List<Move> killer = killers.get(i);
+            if(killer != null && !found.contains(killer))
+                found.add(killer);
+        }
+        return found;
+    }
+
+    /**
+     * @param m a move
+     * @return how many cutoffs m's piece moving to m's destination has caused, weighted by depth
+     */
+    public int history(@Nonnull Move m){
+        return history.get(historyIndex(m));
+    }
+
+    /**
+     * Each move's history is read once, here, so the order stays the same while other threads record cutoffs.
+     * A comparator reading the live table could change its mind part way through a sort, which
+     * {@link List#sort} is allowed to reject with an exception
+     * @param moves the moves that will be sorted
+     * @return orders moves by their history, highest first
+     */
+    @Nonnull public Comparator<Move> byHistory(@Nonnull Collection<Move> moves){
+        Map<Move, Integer> scores = new HashMap<>();
+        for(Move m : moves)
+            scores.put(m, history(m));
+        return Comparator.comparingInt((Move m) -> scores.getOrDefault(m, 0)).reversed();
+    }
+
+    /**
+     * @param ply how many plies below the root
+     * @param moves the moves that will be sorted
+     * @return orders single moves, as for Mr X, with the killer moves at ply first, then by their history as in
+     *         {@link #byHistory(Collection)}
+     */
+    @Nonnull public Comparator<Move> byKillersThenHistory(int ply, @Nonnull Collection<Move> moves){
+        List<List<Move>> killers = killers(ply);
+        return Comparator.comparingInt((Move m) -> {
+            for(int i = 0; i < killers.size(); i++){
+                if(killers.get(i).size() == 1 && killers.get(i).get(0).equals(m))
+                    return i;
+            }
+            return killers.size();
+        }).thenComparing(byHistory(moves));
+    }
+}
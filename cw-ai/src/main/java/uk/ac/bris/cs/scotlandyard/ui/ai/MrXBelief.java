@@ -0,0 +1,184 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * The exact set of nodes Mr X could be on, going by his travel log, kept as a bitset over the graph's nodes.
+ * <br>
+ * Following a log entry ORs together {@link CompiledGraph#neighbourMask} for each node in the set, holding the nodes
+ * one move away with the entry's ticket, then takes out the nodes the detectives are on. A revealed entry replaces
+ * the set with the one node shown. Beliefs are never changed once made, so they can be shared between tree nodes and
+ * threads.
+ */
+public final class MrXBelief {
+
+    private final CompiledGraph graph;
+    private final long[] bits;
+    private final int size;
+
+    private MrXBelief(CompiledGraph graph, long[] bits){
+        this.graph = graph;
+        this.bits = bits;
+        int size = 0;
+        for(long word : bits)
+            size += Long.bitCount(word);
+        this.size = size;
+    }
+
+    private static int words(CompiledGraph graph){
+        return (graph.nodeBound() + 63) >>> 6;
+    }
+
+    /**
+     * @param graph the game graph
+     * @param nodes the nodes Mr X could be on
+     * @return a belief holding exactly nodes, leaving out any not in the graph
+     */
+    @Nonnull public static MrXBelief of(@Nonnull CompiledGraph graph, @Nonnull Iterable<Integer> nodes){
+        long[] bits = new long[words(graph)];
+        for(int u : nodes){
+            if(u >= 0 && u < graph.nodeBound())
+                bits[u >>> 6] |= 1L << u;
+        }
+        return new MrXBelief(graph, bits);
+    }
+
+    /**
+     * @param board the current board
+     * @return where Mr X could be, going by his whole travel log, starting from every possible starting location
+     */
+    @Nonnull public static MrXBelief fromLog(@Nonnull Board board){
+        CompiledGraph graph = CompiledGraph.of(board.getSetup().graph);
+        return of(graph, ScotlandYard.MRX_LOCATIONS).after(board, 0);
+    }
+
+    /**
+     * @param board a board reached from the one this belief is for
+     * @param from how many entries the travel log had on the board this belief is for
+     * @return where Mr X could be on board, after following his travel log on from entry from
+     */
+    @Nonnull public MrXBelief after(@Nonnull Board board, int from){
+        ImmutableList<LogEntry> log = board.getMrXTravelLog();
+        long[] current = bits;
+        for(LogEntry entry : log.subList(Integer.min(from, log.size()), log.size())){
+            if(entry.location().isPresent()){
+                current = new long[bits.length];
+                int u = entry.location().get();
+                current[u >>> 6] |= 1L << u;
+            }
+            else
+                current = follow(current, entry.ticket());
+        }
+        return withoutDetectives(board, current == bits ? bits.clone() : current);
+    }
+
+    //The nodes one move away from any node in current with ticket
+    private long[] follow(long[] current, Ticket ticket){
+        long[] next = new long[current.length];
+        for(int w = 0; w < current.length; w++){
+            long word = current[w];
+            while(word != 0){
+                int u = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                long[] mask = graph.neighbourMask(u, ticket);
+                for(int i = 0; i < next.length; i++)
+                    next[i] |= mask[i];
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @param board the current board
+     * @return this belief without the nodes detectives are on in board
+     */
+    @Nonnull public MrXBelief withoutDetectives(@Nonnull Board board){
+        return withoutDetectives(board, bits.clone());
+    }
+
+    private MrXBelief withoutDetectives(Board board, long[] bits){
+        for(Piece p : board.getPlayers()){
+            if(p.isDetective()){
+                int u = board.getDetectiveLocation((Detective)p).orElse(-1);
+                if(u >= 0 && u < graph.nodeBound())
+                    bits[u >>> 6] &= ~(1L << u);
+            }
+        }
+        return new MrXBelief(graph, bits);
+    }
+
+    /**
+     * @return how many nodes Mr X could be on
+     */
+    public int size(){ return size; }
+
+    /**
+     * @return true if the travel log doesn't fit anywhere on the graph
+     */
+    public boolean isEmpty(){ return size == 0; }
+
+    /**
+     * @param u a node
+     * @return whether Mr X could be on u
+     */
+    public boolean contains(int u){
+        return u >= 0 && u < graph.nodeBound() && (bits[u >>> 6] & (1L << u)) != 0;
+    }
+
+    /**
+     * Used like {@link java.util.BitSet#nextSetBit(int)}, to go through the nodes without boxing them
+     * @param from the node to start looking from
+     * @return the first node at or after from that Mr X could be on, or -1 if there isn't one
+     */
+    public int next(int from){
+        if(from < 0)
+            from = 0;
+        int w = from >>> 6;
+        if(w >= bits.length)
+            return -1;
+        long word = bits[w] & (-1L << from);
+        while(true){
+            if(word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if(++w == bits.length)
+                return -1;
+            word = bits[w];
+        }
+    }
+
+    /**
+     * @return the nodes Mr X could be on, smallest first
+     */
+    @Nonnull public int[] nodes(){
+        int[] nodes = new int[size];
+        int i = 0;
+        for(int u = next(0); u >= 0; u = next(u + 1))
+            nodes[i++] = u;
+        return nodes;
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this == o)
+            return true;
+        if(!(o instanceof MrXBelief))
+            return false;
+        MrXBelief other = (MrXBelief)o;
+        return graph == other.graph && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode(){
+        return Arrays.hashCode(bits);
+    }
+}
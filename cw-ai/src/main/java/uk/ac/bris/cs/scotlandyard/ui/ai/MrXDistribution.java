@@ -0,0 +1,223 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * How likely Mr X is to be on each node, going by his travel log.
+ * <br>
+ * Following a hidden log entry moves each node's probability evenly onto the nodes one move away with the entry's
+ * ticket, then takes out the nodes detectives are on and scales what is left back up to 1. A revealed entry, on the
+ * rounds {@link uk.ac.bris.cs.scotlandyard.model.GameSetup#rounds} reveals, puts all of it on the node shown.
+ * Unlike {@link MrXBelief}, distributions are changed in place so they can be updated inside the search without
+ * allocating: each one keeps a {@link #child()} to copy itself into for the next level down the tree.
+ */
+public final class MrXDistribution {
+
+    private static final Ticket[] TICKETS = Ticket.values();
+
+    /**
+     * For each ticket, the edges into each node, stored by destination so a step only writes each node once
+     */
+    private static final class Transitions {
+        //Edges into v with ticket t are in from[t] and weight[t], between start[t][v] and start[t][v + 1]
+        final int[][] start = new int[TICKETS.length][];
+        final int[][] from = new int[TICKETS.length][];
+        //The chance of Mr X taking the edge, out of every edge he could take from its source with the ticket
+        final float[][] weight = new float[TICKETS.length][];
+
+        Transitions(CompiledGraph graph){
+            int nodeBound = graph.nodeBound();
+            for(Ticket t : TICKETS){
+                int[] inDegree = new int[nodeBound];
+                for(int u = 0; u < nodeBound; u++){
+                    for(int v : graph.neighbours(u, t))
+                        inDegree[v]++;
+                }
+                int[] start = new int[nodeBound + 1];
+                for(int v = 0; v < nodeBound; v++)
+                    start[v + 1] = start[v] + inDegree[v];
+                int[] from = new int[start[nodeBound]];
+                float[] weight = new float[start[nodeBound]];
+                int[] filled = Arrays.copyOf(start, nodeBound);
+                for(int u = 0; u < nodeBound; u++){
+                    int[] neighbours = graph.neighbours(u, t);
+                    for(int v : neighbours){
+                        int k = filled[v]++;
+                        from[k] = u;
+                        weight[k] = 1f / neighbours.length;
+                    }
+                }
+                this.start[t.ordinal()] = start;
+                this.from[t.ordinal()] = from;
+                this.weight[t.ordinal()] = weight;
+            }
+        }
+    }
+
+    private static final LoadingCache<CompiledGraph, Transitions> transitions =
+            CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(Transitions::new));
+
+    private final CompiledGraph graph;
+    private final Transitions edges;
+    private float[] probabilities;
+    //Written to by follow, then swapped with probabilities
+    private float[] scratch;
+    //Created the first time it is asked for, then reused
+    private MrXDistribution child;
+
+    /**
+     * @param graph the game graph
+     */
+    public MrXDistribution(@Nonnull CompiledGraph graph){
+        this.graph = graph;
+        this.edges = transitions.getUnchecked(graph);
+        this.probabilities = new float[graph.nodeBound()];
+        this.scratch = new float[graph.nodeBound()];
+    }
+
+    /**
+     * @param graph the game graph
+     * @param belief the nodes Mr X could be on
+     * @return a distribution spread evenly over belief
+     */
+    @Nonnull public static MrXDistribution of(@Nonnull CompiledGraph graph, @Nonnull MrXBelief belief){
+        MrXDistribution distribution = new MrXDistribution(graph);
+        for(int u = belief.next(0); u >= 0; u = belief.next(u + 1))
+            distribution.probabilities[u] = 1f / belief.size();
+        return distribution;
+    }
+
+    /**
+     * @param board the current board
+     * @return where Mr X is likely to be, going by his whole travel log, starting evenly over every possible
+     *         starting location
+     */
+    @Nonnull public static MrXDistribution fromLog(@Nonnull Board board){
+        CompiledGraph graph = CompiledGraph.of(board.getSetup().graph);
+        MrXDistribution distribution = of(graph, MrXBelief.of(graph, ScotlandYard.MRX_LOCATIONS));
+        distribution.follow(board, 0);
+        return distribution;
+    }
+
+    /**
+     * @return a distribution kept by this one to be copied into with {@link #set(MrXDistribution)}, the same one
+     *         every time. It must not be used by more than one thread at once
+     */
+    @Nonnull public MrXDistribution child(){
+        if(child == null)
+            child = new MrXDistribution(graph);
+        return child;
+    }
+
+    /**
+     * @return a new distribution equal to this one, which can be given to another thread
+     */
+    @Nonnull public MrXDistribution copy(){
+        MrXDistribution copy = new MrXDistribution(graph);
+        copy.set(this);
+        return copy;
+    }
+
+    /**
+     * Makes this distribution equal to other
+     * @param other a distribution on the same graph
+     */
+    public void set(@Nonnull MrXDistribution other){
+        System.arraycopy(other.probabilities, 0, probabilities, 0, probabilities.length);
+    }
+
+    /**
+     * Follows Mr X's travel log on, then takes out the nodes detectives are on
+     * @param board a board reached from the one this distribution is for
+     * @param from how many entries the travel log had on the board this distribution is for
+     */
+    public void follow(@Nonnull Board board, int from){
+        ImmutableList<LogEntry> log = board.getMrXTravelLog();
+        for(int i = from; i < log.size(); i++){
+            LogEntry entry = log.get(i);
+            if(entry.location().isPresent()){
+                Arrays.fill(probabilities, 0f);
+                probabilities[entry.location().get()] = 1f;
+            }
+            else
+                step(entry.ticket());
+        }
+        removeDetectives(board);
+    }
+
+    //Moves the probabilities one move along edges that take ticket
+    private void step(Ticket ticket){
+        int[] start = edges.start[ticket.ordinal()];
+        int[] from = edges.from[ticket.ordinal()];
+        float[] weight = edges.weight[ticket.ordinal()];
+        for(int v = 0; v < scratch.length; v++){
+            float p = 0f;
+            for(int k = start[v]; k < start[v + 1]; k++)
+                p += probabilities[from[k]] * weight[k];
+            scratch[v] = p;
+        }
+        float[] swap = probabilities;
+        probabilities = scratch;
+        scratch = swap;
+    }
+
+    /**
+     * Takes out the nodes detectives are on in board, then scales the rest back up to 1
+     * @param board the current board
+     */
+    public void removeDetectives(@Nonnull Board board){
+        for(Piece p : board.getPlayers()){
+            if(p.isDetective()){
+                int u = board.getDetectiveLocation((Detective)p).orElse(-1);
+                if(u >= 0 && u < probabilities.length)
+                    probabilities[u] = 0f;
+            }
+        }
+        float total = 0f;
+        for(float p : probabilities)
+            total += p;
+        //Nothing left means the log doesn't fit the graph, which there is nothing to be done about
+        if(total == 0f)
+            return;
+        float scale = 1f / total;
+        for(int u = 0; u < probabilities.length; u++)
+            probabilities[u] *= scale;
+    }
+
+    /**
+     * @return one more than the largest node, for going through every node's probability
+     */
+    public int nodeBound(){ return probabilities.length; }
+
+    /**
+     * @param u a node
+     * @return the probability of Mr X being on u
+     */
+    public float probability(int u){
+        return u >= 0 && u < probabilities.length ? probabilities[u] : 0f;
+    }
+
+    /**
+     * @return a hash of every node's probability. The same position can be reached with different distributions,
+     *         depending on where detectives were on the way, so this tells them apart in the {@link TranspositionTable}
+     */
+    public long hash(){
+        long hash = 0;
+        for(float p : probabilities)
+            hash = (hash + Float.floatToIntBits(p)) * 0x9E37_79B9_7F4A_7C15L;
+        return hash;
+    }
+}
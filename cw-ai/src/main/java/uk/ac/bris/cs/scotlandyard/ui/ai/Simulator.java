@@ -0,0 +1,265 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import uk.ac.bris.cs.scotlandyard.ResourceManager;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plays games between two AIs without the UI, then prints how often each side won and how long moves took.
+ * <br>
+ * AIs are found with {@link ResourceManager#scanAis()} and picked by their name or class name. Each game gets new
+ * instances of both, and starts from the locations {@link ScotlandYard} generates from the game's seed, so the same
+ * arguments always play the same starts. For example
+ * <pre>
+ * mvn exec:java -Dmain.class=uk.ac.bris.cs.scotlandyard.ui.ai.Simulator \
+ *     -Dexec.args="--games 20 --mrx MiniMaxAI --detectives MonteCarloAI"
+ * </pre>
+ */
+public class Simulator {
+
+    //Detectives in a standard game
+    static final int DETECTIVES = 5;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Simulator [options]",
+            "  --games N          games to play (default 10)",
+            "  --seed N           seed of the first game, each later game adds one (default 0)",
+            "  --mrx NAME         the AI playing Mr X, by name or class name (default MiniMaxAI)",
+            "  --detectives NAME  the AI playing the detectives (default MiniMaxAI)",
+            "  --timeout SECONDS  tell an AI to stop after this long on one move, 0 for never (default 0)",
+            "  --list             list the AIs found and exit");
+
+    int games = 10;
+    int seed = 0;
+    String mrX = MiniMaxAI.class.getSimpleName();
+    String detectives = MiniMaxAI.class.getSimpleName();
+    double timeout = 0;
+    boolean list = false;
+
+    //How long each side's moves took
+    static final class Latencies {
+        private long[] nanos = new long[64];
+        private int count;
+
+        void add(long n){
+            if(count == nanos.length)
+                nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = n;
+        }
+
+        //The time at or below which fraction of moves were picked, in milliseconds
+        double percentile(double fraction){
+            if(count == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            int i = (int)Math.ceil(fraction * count) - 1;
+            return sorted[Integer.max(0, i)] / 1e6;
+        }
+
+        double mean(){
+            if(count == 0)
+                return 0;
+            long total = 0;
+            for(int i = 0; i < count; i++)
+                total += nanos[i];
+            return total / 1e6 / count;
+        }
+
+        int count(){ return count; }
+    }
+
+    public static void main(String[] args) {
+        Simulator simulator = new Simulator();
+        try{
+            simulator.parse(args);
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        simulator.run();
+    }
+
+    /**
+     * @param args the command line arguments
+     * @throws IllegalArgumentException if an argument isn't recognised or is missing its value
+     */
+    void parse(String[] args){
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(arg.equals("--list")){
+                list = true;
+                continue;
+            }
+            if(i + 1 == args.length)
+                throw new IllegalArgumentException("Missing value for " + arg);
+            String value = args[++i];
+            try{
+                switch(arg){
+                    case "--games":
+                        games = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Integer.parseInt(value);
+                        break;
+                    case "--mrx":
+                        mrX = value;
+                        break;
+                    case "--detectives":
+                        detectives = value;
+                        break;
+                    case "--timeout":
+                        timeout = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            catch(NumberFormatException e){
+                throw new IllegalArgumentException("Not a number for " + arg + ": " + value);
+            }
+        }
+        if(games < 0 || timeout < 0)
+            throw new IllegalArgumentException("--games and --timeout can't be negative");
+    }
+
+    /**
+     * @param ais the AIs to pick from
+     * @param name the name or class name, simple or full, of the AI wanted
+     * @return the class of the AI with that name
+     * @throws IllegalArgumentException if no AI has that name
+     */
+    @SuppressWarnings("unchecked")
+    static Class<Ai> findAi(List<Ai> ais, String name){
+        for(Ai ai : ais){
+            Class<?> cls = ai.getClass();
+            if(ai.name().equals(name) || cls.getSimpleName().equals(name) || cls.getName().equals(name))
+                return (Class<Ai>)cls;
+        }
+        throw new IllegalArgumentException("No AI called " + name);
+    }
+
+    void run(){
+        ImmutableList<Ai> ais = ResourceManager.scanAis();
+        if(list){
+            for(Ai ai : ais)
+                System.out.println(ai.getClass().getName() + " (" + ai.name() + ")");
+            return;
+        }
+        Class<Ai> mrXClass;
+        Class<Ai> detectivesClass;
+        try{
+            mrXClass = findAi(ais, mrX);
+            detectivesClass = findAi(ais, detectives);
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage() + ", use --list to see the AIs found");
+            System.exit(2);
+            return;
+        }
+        GameSetup setup;
+        try{
+            setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+        }
+        catch(IOException e){
+            throw new RuntimeException("Unable to read the game graph", e);
+        }
+        System.out.printf(Locale.ROOT, "%s as Mr X against %s as the detectives, %d games%n",
+                mrXClass.getSimpleName(), detectivesClass.getSimpleName(), games);
+        Latencies mrXLatencies = new Latencies();
+        Latencies detectiveLatencies = new Latencies();
+        int mrXWins = 0;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "simulator-timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        try{
+            for(int game = 0; game < games; game++){
+                int gameSeed = seed + game;
+                boolean mrXWon = play(setup, gameSeed, ResourceManager.instantiateAi(mrXClass),
+                        ResourceManager.instantiateAi(detectivesClass), mrXLatencies, detectiveLatencies, timer);
+                if(mrXWon)
+                    mrXWins++;
+                System.out.printf(Locale.ROOT, "game %d (seed %d): %s won%n", game + 1, gameSeed,
+                        mrXWon ? "Mr X" : "detectives");
+            }
+        }
+        finally{
+            timer.shutdownNow();
+        }
+        int played = Integer.max(1, games);
+        System.out.printf(Locale.ROOT, "Mr X won %d (%.1f%%), detectives won %d (%.1f%%)%n",
+                mrXWins, 100.0 * mrXWins / played, games - mrXWins, 100.0 * (games - mrXWins) / played);
+        printLatencies("Mr X", mrXLatencies);
+        printLatencies("Detectives", detectiveLatencies);
+    }
+
+    private static void printLatencies(String side, Latencies latencies){
+        System.out.printf(Locale.ROOT, "%s: %d moves, mean %.1fms, median %.1fms, p95 %.1fms, max %.1fms%n",
+                side, latencies.count(), latencies.mean(), latencies.percentile(0.5), latencies.percentile(0.95),
+                latencies.percentile(1));
+    }
+
+    /**
+     * Plays one game to the end
+     * @return whether Mr X won
+     * @throws IllegalStateException if an AI picks a move that isn't available
+     */
+    private boolean play(GameSetup setup, int gameSeed, Ai mrXAi, Ai detectivesAi,
+                         Latencies mrXLatencies, Latencies detectiveLatencies, ScheduledExecutorService timer){
+        List<Integer> locations = ScotlandYard.generateDetectiveLocations(gameSeed, DETECTIVES);
+        List<Player> detectivePlayers = new ArrayList<>();
+        for(int i = 0; i < DETECTIVES; i++)
+            detectivePlayers.add(new Player(ScotlandYard.DETECTIVES.asList().get(i),
+                    ScotlandYard.defaultDetectiveTickets(), locations.get(i)));
+        Player mrXPlayer = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(),
+                ScotlandYard.generateMrXLocation(gameSeed));
+        GameState state = new MyGameStateFactory().build(setup, mrXPlayer, ImmutableList.copyOf(detectivePlayers));
+        mrXAi.onStart();
+        detectivesAi.onStart();
+        try{
+            while(state.getWinner().isEmpty()){
+                boolean mrXTurn = state.getAvailableMoves().iterator().next().commencedBy().isMrX();
+                Ai ai = mrXTurn ? mrXAi : detectivesAi;
+                AtomicBoolean terminate = new AtomicBoolean(false);
+                ScheduledFuture<?> stop = timeout == 0 ? null : timer.schedule(() -> terminate.set(true),
+                        (long)(timeout * TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+                long start = System.nanoTime();
+                Move move = ai.pickMove(state, terminate);
+                long elapsed = System.nanoTime() - start;
+                if(stop != null)
+                    stop.cancel(false);
+                (mrXTurn ? mrXLatencies : detectiveLatencies).add(elapsed);
+                if(!state.getAvailableMoves().contains(move))
+                    throw new IllegalStateException("Ai(" + ai.name() + ") selected an invalid move, got: " + move);
+                state = state.advance(move);
+            }
+        }
+        finally{
+            mrXAi.onTerminate();
+            detectivesAi.onTerminate();
+        }
+        return state.getWinner().stream().allMatch(Piece::isMrX);
+    }
+}
@@ -0,0 +1,196 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.TicketBoard;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Shortest distances that can actually be travelled with a limited number of taxi, bus and underground tickets.
+ * <br>
+ * Distances are found with a breadth first search over (node, tickets left) and cached per source node and
+ * ticket bucket. A ticket count of {@value #BUCKET_CAP} or more is put in the same bucket and treated as never
+ * running out, since no path worth measuring needs that many of one ticket.
+ * The cache has a fixed number of slots, each holding one source and bucket's distances until another one that
+ * maps to the same slot replaces it, so it stays small however many sources and buckets are asked for.
+ * Each thread searches with its own reused scratch arrays rather than allocating them per miss.
+ * Secret tickets aren't counted, so ferries are never used.
+ */
+public final class TicketDistances {
+
+    /**
+     * Ticket counts at or above this share a bucket
+     */
+    public static final int BUCKET_CAP = 8;
+    private static final int BUCKETS = BUCKET_CAP + 1;
+    private static final int BUCKET_COUNT = BUCKETS * BUCKETS * BUCKETS;
+    private static final short UNREACHABLE = -1;
+    /**
+     * Slots in the cache. On the standard map a full cache holds under 2MB
+     */
+    public static final int CACHE_SIZE = 1 << 12;
+
+    private final CompiledGraph graph;
+    //Distances from a source node with some tickets, keyed by (source * BUCKET_COUNT + bucket)
+    private final AtomicReferenceArray<Entry> cache;
+    private final int mask;
+    private final ThreadLocal<Scratch> scratch;
+
+    private static final class Entry {
+        final int key;
+        final short[] distances;
+
+        Entry(int key, short[] distances){
+            this.key = key;
+            this.distances = distances;
+        }
+    }
+
+    //Search arrays kept between searches on one thread
+    private static final class Scratch {
+        //One bit per search state, cleared before each search
+        final long[] visited;
+        //Grown as searches need it, as most never reach more than a fraction of the states
+        int[] queue = new int[1024];
+
+        Scratch(int states){
+            visited = new long[(states + 63) / 64];
+        }
+    }
+
+    /**
+     * @param graph the graph to measure distances on
+     */
+    public TicketDistances(@Nonnull CompiledGraph graph){
+        this(graph, CACHE_SIZE);
+    }
+
+    /**
+     * @param graph the graph to measure distances on
+     * @param cacheSize how many sources and buckets to keep distances for, rounded down to a power of two
+     */
+    TicketDistances(@Nonnull CompiledGraph graph, int cacheSize){
+        this.graph = graph;
+        int slots = Integer.highestOneBit(Integer.max(1, cacheSize));
+        this.cache = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(graph.nodeBound() * BUCKET_COUNT));
+    }
+
+    /**
+     * @param source node to measure from
+     * @param destination node to measure to
+     * @param tickets the tickets of whoever is travelling
+     * @return the fewest moves from source to destination using tickets, or Integer.MAX_VALUE if it can't be done
+     */
+    public int distance(int source, int destination, @Nonnull TicketBoard tickets){
+        return distance(source, destination, tickets.getCount(Ticket.TAXI),
+                tickets.getCount(Ticket.BUS), tickets.getCount(Ticket.UNDERGROUND));
+    }
+
+    /**
+     * @param source node to measure from
+     * @param destination node to measure to
+     * @param taxi taxi tickets available
+     * @param bus bus tickets available
+     * @param underground underground tickets available
+     * @return the fewest moves from source to destination using the tickets, or Integer.MAX_VALUE if it can't be done
+     */
+    public int distance(int source, int destination, int taxi, int bus, int underground){
+        if(source < 0 || source >= graph.nodeBound())
+            return Integer.MAX_VALUE;
+        int key = source * BUCKET_COUNT + (bucket(taxi) * BUCKETS + bucket(bus)) * BUCKETS + bucket(underground);
+        int slot = slot(key);
+        Entry entry = cache.get(slot);
+        short[] distances;
+        if(entry != null && entry.key == key)
+            distances = entry.distances;
+        else{
+            //Two threads may both search on a miss, but they find the same distances so either can be kept
+            distances = runBreadthFirstSearch(source, bucket(taxi), bucket(bus), bucket(underground));
+            cache.set(slot, new Entry(key, distances));
+        }
+        if(destination < 0 || destination >= distances.length || distances[destination] == UNREACHABLE)
+            return Integer.MAX_VALUE;
+        return distances[destination];
+    }
+
+    //Spreads neighbouring keys over the slots, as a search asks for many buckets of one source together
+    private int slot(int key){
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int bucket(int count){
+        return Integer.max(0, Integer.min(count, BUCKET_CAP));
+    }
+
+    //Index of the ticket a transport needs in a search state, or -1 if it isn't counted
+    private static int ticketIndex(Transport t){
+        switch(t.requiredTicket()){
+            case TAXI: return 0;
+            case BUS: return 1;
+            case UNDERGROUND: return 2;
+            default: return -1;
+        }
+    }
+
+    //Searches states of (node, taxi left, bus left, underground left), packed into one int
+    private short[] runBreadthFirstSearch(int source, int taxi, int bus, int underground){
+        int nodeBound = graph.nodeBound();
+        short[] distances = new short[nodeBound];
+        Arrays.fill(distances, UNREACHABLE);
+        if(source < 0 || source >= nodeBound)
+            return distances;
+        Scratch s = scratch.get();
+        long[] visited = s.visited;
+        Arrays.fill(visited, 0);
+        int[] queue = s.queue;
+        int[] left = new int[3];
+        int head = 0, tail = 0;
+        int start = source * BUCKET_COUNT + (taxi * BUCKETS + bus) * BUCKETS + underground;
+        visited[start >>> 6] |= 1L << start;
+        queue[tail++] = start;
+        distances[source] = 0;
+        //The queue is split into layers, each one move further from source than the last
+        for(short depth = 1; head < tail; depth++){
+            int layerEnd = tail;
+            while(head < layerEnd){
+                int state = queue[head++];
+                int u = state / BUCKET_COUNT;
+                int ticketState = state % BUCKET_COUNT;
+                int[] neighbours = graph.neighbours(u);
+                byte[] transports = graph.transports(u);
+                for(int i = 0; i < neighbours.length; i++){
+                    for(Transport t : Transport.values()){
+                        int ticket = ticketIndex(t);
+                        if(ticket == -1 || (transports[i] & CompiledGraph.transportBit(t)) == 0)
+                            continue;
+                        left[0] = ticketState / (BUCKETS * BUCKETS);
+                        left[1] = (ticketState / BUCKETS) % BUCKETS;
+                        left[2] = ticketState % BUCKETS;
+                        if(left[ticket] == 0)
+                            continue;
+                        //A full bucket never runs out
+                        if(left[ticket] != BUCKET_CAP)
+                            left[ticket]--;
+                        int next = neighbours[i] * BUCKET_COUNT + (left[0] * BUCKETS + left[1]) * BUCKETS + left[2];
+                        if((visited[next >>> 6] & (1L << next)) == 0){
+                            visited[next >>> 6] |= 1L << next;
+                            if(tail == queue.length)
+                                s.queue = queue = Arrays.copyOf(queue, queue.length * 2);
+                            queue[tail++] = next;
+                            if(distances[neighbours[i]] == UNREACHABLE)
+                                distances[neighbours[i]] = depth;
+                        }
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,98 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size table of scores for positions already searched, indexed by {@link Zobrist} hash.
+ * <br>
+ * Each slot holds one position. A new entry replaces the old one if the old one is from an earlier search,
+ * or was searched no deeper than the new one.
+ * Entries are packed into one long and stored next to (hash XOR entry), so threads can read and write the table
+ * without locking: a slot half written by another thread just fails to match its hash.
+ */
+public final class TranspositionTable {
+
+    /**
+     * The score is exact
+     */
+    public static final int EXACT = 1;
+    /**
+     * The score is a lower bound, as the search was cut off by beta
+     */
+    public static final int LOWER = 2;
+    /**
+     * The score is an upper bound, as no child beat alpha
+     */
+    public static final int UPPER = 3;
+    /**
+     * Returned by probe when the position isn't in the table
+     */
+    public static final long MISS = 0;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private volatile int age;
+
+    /**
+     * @param sizeLog2 log2 of the number of entries the table can hold
+     */
+    public TranspositionTable(int sizeLog2){
+        this.slots = new AtomicLongArray(2 << sizeLog2);
+        this.mask = (1 << sizeLog2) - 1;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from older searches are replaced first
+     */
+    public void nextSearch(){
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * @param hash the hash of a position
+     * @return the packed entry for the position, or {@link #MISS}
+     */
+    public long probe(long hash){
+        int i = ((int)hash & mask) << 1;
+        long entry = slots.get(i + 1);
+        if(entry == MISS || (slots.get(i) ^ entry) != hash)
+            return MISS;
+        return entry;
+    }
+
+    /**
+     * @param hash the hash of a position
+     * @param depth how many levels below the position were searched
+     * @param score the score found for the position
+     * @param bound one of {@link #EXACT}, {@link #LOWER} and {@link #UPPER}
+     */
+    public void store(long hash, int depth, int score, int bound){
+        int i = ((int)hash & mask) << 1;
+        long old = slots.get(i + 1);
+        if(old != MISS && age(old) == age && depth(old) > depth && (slots.get(i) ^ old) != hash)
+            return;
+        long entry = (long)score << 32 | (long)age << 16 | (depth & 0xFF) << 8 | bound;
+        slots.set(i, hash ^ entry);
+        slots.set(i + 1, entry);
+    }
+
+    /**
+     * @param entry a packed entry
+     * @return the score in entry
+     */
+    public static int score(long entry){ return (int)(entry >> 32); }
+
+    /**
+     * @param entry a packed entry
+     * @return the depth entry was searched to
+     */
+    public static int depth(long entry){ return (int)(entry >> 8) & 0xFF; }
+
+    /**
+     * @param entry a packed entry
+     * @return what kind of bound the score in entry is
+     */
+    public static int bound(long entry){ return (int)entry & 0xFF; }
+
+    private static int age(long entry){ return (int)(entry >> 16) & 0xFF; }
+}
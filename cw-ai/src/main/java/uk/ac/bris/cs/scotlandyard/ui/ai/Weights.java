@@ -0,0 +1,112 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * How much each {@link Feature} counts towards a score.
+ * <br>
+ * Weights are read from properties named after the features in lower case, behind a prefix for whose weights
+ * they are, such as {@code mrx.distance=-200}. Any feature without a property keeps its default weight.
+ */
+public final class Weights {
+
+    /**
+     * Mr X's default weights
+     */
+    public static final Weights MRX_DEFAULTS = new Weights(new double[Feature.count()])
+            .with(Feature.DISTANCE, -200)
+            .with(Feature.VISIBILITY, 10)
+            .with(Feature.PRICE, -10)
+            .with(Feature.TAXI, 5)
+            .with(Feature.BUS, 10)
+            .with(Feature.UNDERGROUND, 15)
+            .with(Feature.FERRY, 100);
+    /**
+     * The detectives' default weights. A ferry is only any use to Mr X, so it counts for nothing here
+     */
+    public static final Weights DETECTIVE_DEFAULTS = new Weights(new double[Feature.count()])
+            .with(Feature.DISTANCE, -200)
+            .with(Feature.CAUGHT, -1000)
+            .with(Feature.VISIBILITY, 10)
+            .with(Feature.PRICE, 10)
+            .with(Feature.TAXI, 5)
+            .with(Feature.BUS, 10)
+            .with(Feature.UNDERGROUND, 15)
+            .with(Feature.EXPECTED_DISTANCE, 20);
+
+    private final double[] weights;
+
+    private Weights(double[] weights){
+        if(weights.length != Feature.count())
+            throw new IllegalArgumentException("Expected " + Feature.count() + " weights, got " + weights.length);
+        this.weights = weights;
+    }
+
+    /**
+     * @param feature a feature
+     * @param weight how much it should count
+     * @return these weights, but with feature weighted by weight
+     */
+    @Nonnull public Weights with(@Nonnull Feature feature, double weight){
+        double[] weights = this.weights.clone();
+        weights[feature.ordinal()] = weight;
+        return new Weights(weights);
+    }
+
+    /**
+     * @param properties where to read the weights from
+     * @param prefix put in front of each feature's name, such as "mrx."
+     * @param defaults weights for features without a property
+     * @return the weights read
+     * @throws IllegalArgumentException if a weight isn't a number
+     */
+    @Nonnull public static Weights parse(@Nonnull Properties properties, @Nonnull String prefix,
+                                         @Nonnull Weights defaults){
+        double[] weights = defaults.weights.clone();
+        for(Feature f : Feature.values()){
+            String key = prefix + f.name().toLowerCase(Locale.ROOT);
+            String value = properties.getProperty(key);
+            if(value == null)
+                continue;
+            try{
+                weights[f.ordinal()] = Double.parseDouble(value.trim());
+            }
+            catch(NumberFormatException e){
+                throw new IllegalArgumentException("Weight " + key + " is not a number: " + value, e);
+            }
+        }
+        return new Weights(weights);
+    }
+
+    /**
+     * @param feature a feature
+     * @return how much feature counts towards a score
+     */
+    public double weight(@Nonnull Feature feature){
+        return weights[feature.ordinal()];
+    }
+
+    /**
+     * @param features every feature of a board, as filled in by {@link Feature#extract}
+     * @return the weighted sum of features
+     */
+    public double score(@Nonnull double[] features){
+        double score = 0;
+        for(int i = 0; i < weights.length; i++)
+            score += weights[i] * features[i];
+        return score;
+    }
+
+    @Override
+    public boolean equals(Object o){
+        return this == o || (o instanceof Weights && Arrays.equals(weights, ((Weights)o).weights));
+    }
+
+    @Override
+    public int hashCode(){
+        return Arrays.hashCode(weights);
+    }
+}
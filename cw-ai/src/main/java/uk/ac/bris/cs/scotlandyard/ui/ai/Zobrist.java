@@ -0,0 +1,128 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.TicketBoard;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.util.Random;
+
+/**
+ * Zobrist hashing of boards in the game tree.
+ * <br>
+ * Each part of a position (a piece on a node, a piece holding some number of a ticket, a possible Mr X location,
+ * the round, whose turn it is) has its own random 64 bit key, and a position's hash is the XOR of its parts' keys.
+ * Two positions with the same hash are treated as the same by the {@link TranspositionTable}.
+ */
+public final class Zobrist {
+
+    //Node and count keys wrap around past these, which only makes collisions more likely on bigger graphs
+    private static final int NODES = 1024;
+    private static final int COUNTS = 64;
+    private static final int ROUNDS = 64;
+    //Mr X, then each detective
+    private static final int PIECES = 1 + Detective.values().length;
+    private static final int TICKETS = Ticket.values().length;
+
+    private static final long[] locationKeys;
+    private static final long[] ticketKeys;
+    private static final long[] possibleLocationKeys;
+    private static final long[] possibleCountKeys;
+    private static final long[] roundKeys;
+    private static final long mrXToMoveKey;
+    private static final long mrXPlayerKey;
+    private static final long[] remainingKeys;
+
+    static {
+        //Fixed seed, so hashes are the same every run
+        Random random = new Random(0x5C07_1A9DL);
+        locationKeys = randomKeys(random, PIECES * NODES);
+        ticketKeys = randomKeys(random, PIECES * TICKETS * COUNTS);
+        possibleLocationKeys = randomKeys(random, NODES);
+        possibleCountKeys = randomKeys(random, COUNTS);
+        roundKeys = randomKeys(random, ROUNDS);
+        mrXToMoveKey = random.nextLong();
+        mrXPlayerKey = random.nextLong();
+        remainingKeys = randomKeys(random, PIECES);
+    }
+
+    private Zobrist(){}
+
+    private static long[] randomKeys(Random random, int n){
+        long[] keys = new long[n];
+        for(int i = 0; i < n; i++)
+            keys[i] = random.nextLong();
+        return keys;
+    }
+
+    private static int pieceIndex(Piece p){
+        return p.isMrX() ? 0 : 1 + ((Detective)p).ordinal();
+    }
+
+    /**
+     * @param board the board to hash
+     * @param mrXLocation Mr X's location if it is known, -1 if not
+     * @param belief where the detectives think Mr X could be
+     * @param distribution how likely Mr X is to be on each node, or null if scores don't depend on it
+     * @param mrXToMove whether it is Mr X's turn at board
+     * @param player who the tree is being searched for, as the same board is scored differently for each
+     * @return the hash of the position
+     */
+    public static long hash(Board board, int mrXLocation, MrXBelief belief, MrXDistribution distribution,
+                            boolean mrXToMove, boolean player){
+        long hash = 0;
+        for(Piece p : board.getPlayers()){
+            int piece = pieceIndex(p);
+            int location = p.isMrX() ? mrXLocation : board.getDetectiveLocation((Detective)p).orElse(-1);
+            if(location >= 0)
+                hash ^= locationKeys[piece * NODES + (location & (NODES - 1))];
+            TicketBoard tickets = board.getPlayerTickets(p).orElseThrow();
+            for(Ticket t : Ticket.values()){
+                int count = tickets.getCount(t) & (COUNTS - 1);
+                hash ^= ticketKeys[(piece * TICKETS + t.ordinal()) * COUNTS + count];
+            }
+        }
+        for(int l = belief.next(0); l >= 0; l = belief.next(l + 1))
+            hash ^= possibleLocationKeys[l & (NODES - 1)];
+        //Nodes past NODES wrap onto the same keys and could cancel out, so the count is hashed too
+        hash ^= possibleCountKeys[belief.size() & (COUNTS - 1)];
+        if(distribution != null)
+            hash ^= distribution.hash();
+        hash ^= roundKeys[board.getMrXTravelLog().size() & (ROUNDS - 1)];
+        if(mrXToMove)
+            hash ^= mrXToMoveKey;
+        if(player)
+            hash ^= mrXPlayerKey;
+        return hash;
+    }
+
+    /**
+     * Hashes the parts of a state that decide what moves can be made from it, so states which
+     * {@link GameTree} would treat as the same position have the same key. Mr X's location only counts while
+     * he still has to move, as it is only a guess at other times in the detectives' search
+     * @param state the state to hash
+     * @return the key of the position
+     */
+    public static long positionKey(BoardToGameState state){
+        long hash = 0;
+        for(Piece p : state.getPlayers()){
+            int piece = pieceIndex(p);
+            int location = -1;
+            if(p.isDetective())
+                location = state.detectiveLocation((Detective)p);
+            else if(state.remaining.contains(p))
+                location = state.mrXLocation();
+            if(location >= 0)
+                hash ^= locationKeys[piece * NODES + (location & (NODES - 1))];
+            for(Ticket t : Ticket.values()){
+                int count = state.ticketCount(p, t) & (COUNTS - 1);
+                hash ^= ticketKeys[(piece * TICKETS + t.ordinal()) * COUNTS + count];
+            }
+            if(state.remaining.contains(p))
+                hash ^= remainingKeys[piece];
+        }
+        hash ^= roundKeys[state.getMrXTravelLog().size() & (ROUNDS - 1)];
+        return hash;
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.CompactGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+
+/**
+ * Tests for {@link BoardToGameState} searching from a board where Mr X's location isn't known
+ */
+public class BoardToGameStateTest {
+
+    private static GameSetup setup;
+    private static CompiledGraph graph;
+
+    @BeforeClass public static void setUp() throws IOException {
+        setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+        graph = CompiledGraph.of(setup.graph);
+    }
+
+    //The detectives' turn after Mr X's hidden taxi move from 46 to 33, wrapped as the detectives' search sees it
+    private static BoardToGameState detectivesToMove(MrXBelief belief) {
+        GameState state = new CompactGameStateFactory().build(setup,
+                new Player(MRX, ScotlandYard.defaultMrXTickets(), 46),
+                ImmutableList.of(
+                        new Player(RED, ScotlandYard.defaultDetectiveTickets(), 13),
+                        new Player(BLUE, ScotlandYard.defaultDetectiveTickets(), 58)))
+                .advance(new SingleMove(MRX, 46, Ticket.TAXI, 33));
+        return new BoardToGameState(state, List.of(RED, BLUE), -1, belief);
+    }
+
+    //Moves red anywhere Mr X can't be, then blue onto 45
+    private static GameState advanceDetectives(BoardToGameState state, Set<Integer> avoid) {
+        Move red = state.getAvailableMoves().stream()
+                .filter(m -> m.commencedBy() == RED && !avoid.contains(m.visit(MiniMaxAI.destinationVisitor)))
+                .findFirst().orElseThrow();
+        return state.forceAdvance(red).advance(new SingleMove(BLUE, 58, Ticket.TAXI, 45));
+    }
+
+    @Test public void testMrXMovesComeFromEveryNodeInBelief() {
+        MrXBelief belief = MrXBelief.of(graph, List.of(33, 45, 61));
+        GameState advanced = advanceDetectives(detectivesToMove(belief), Set.of(33, 45, 61));
+        assertThat(advanced.getWinner()).isEmpty();
+        //Blue is now on 45, so Mr X can only be moving from 33 or 61
+        Set<Integer> sources = advanced.getAvailableMoves().stream().map(Move::source).collect(Collectors.toSet());
+        assertThat(sources).containsExactlyInAnyOrder(33, 61);
+        assertThat(advanced.getAvailableMoves()).allMatch(m -> m.commencedBy() == MRX);
+        assertThat(advanced.getAvailableMoves()).contains(new SingleMove(MRX, 33, Ticket.TAXI, 46));
+    }
+
+    @Test public void testDetectivesWinWhenNoNodeInBeliefIsLeft() {
+        MrXBelief belief = MrXBelief.of(graph, List.of(45));
+        GameState advanced = advanceDetectives(detectivesToMove(belief), Set.of(45));
+        assertThat(advanced.getAvailableMoves()).isEmpty();
+        assertThat(advanced.getWinner()).containsExactlyInAnyOrder(RED, BLUE);
+    }
+
+}
@@ -0,0 +1,118 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+
+/**
+ * Tests for {@link DetectiveMoves}, against the eager combination code it replaced
+ */
+public class DetectiveMovesTest {
+
+    //The old permuteMoves, which builds the combinations with the last detective's move first
+    private static List<List<Move>> permuteMoves(List<List<Move>> playerMoves, int depth) {
+        List<List<Move>> permutations = new ArrayList<>();
+        if(depth == playerMoves.size() - 1){
+            for(Move m : playerMoves.get(depth))
+                permutations.add(new ArrayList<>(List.of(m)));
+            return permutations;
+        }
+        permutations = permuteMoves(playerMoves, depth + 1);
+        List<List<Move>> newPermutations = new ArrayList<>();
+        for(Move m : playerMoves.get(depth)){
+            for(List<Move> ms : permutations){
+                List<Move> newMoveList = new ArrayList<>(ms);
+                newMoveList.add(m);
+                newPermutations.add(newMoveList);
+            }
+        }
+        return newPermutations;
+    }
+
+    //What the old getDetectiveMoves gave, put back in the detectives' order
+    private static List<List<Move>> eagerCombinations(List<List<Move>> playerMoves) {
+        List<List<Move>> combinations = permuteMoves(playerMoves, 0);
+        combinations.removeIf(
+                x -> x.stream().map(y -> y.visit(MiniMaxAI.destinationVisitor)).distinct().count() != x.size()
+        );
+        for(List<Move> combination : combinations)
+            Collections.reverse(combination);
+        return combinations;
+    }
+
+    private static List<List<Move>> lazyCombinations(List<List<Move>> playerMoves) {
+        List<List<Move>> combinations = new ArrayList<>();
+        for(List<Move> combination : new DetectiveMoves(playerMoves))
+            combinations.add(combination);
+        return combinations;
+    }
+
+    private static Move move(Detective detective, int source, int destination) {
+        return new SingleMove(detective, source, Ticket.TAXI, destination);
+    }
+
+    @Test public void testSkipsCombinationsEndingOnTheSameNode() {
+        List<List<Move>> playerMoves = List.of(
+                List.of(move(RED, 1, 8), move(RED, 1, 9)),
+                List.of(move(BLUE, 20, 8), move(BLUE, 20, 9), move(BLUE, 20, 33)),
+                List.of(move(GREEN, 10, 9), move(GREEN, 10, 11)));
+        List<List<Move>> lazy = lazyCombinations(playerMoves);
+        assertThat(lazy).containsExactlyInAnyOrderElementsOf(eagerCombinations(playerMoves));
+        assertThat(lazy).containsExactly(
+                List.of(move(RED, 1, 8), move(BLUE, 20, 9), move(GREEN, 10, 11)),
+                List.of(move(RED, 1, 8), move(BLUE, 20, 33), move(GREEN, 10, 9)),
+                List.of(move(RED, 1, 8), move(BLUE, 20, 33), move(GREEN, 10, 11)),
+                List.of(move(RED, 1, 9), move(BLUE, 20, 8), move(GREEN, 10, 11)),
+                List.of(move(RED, 1, 9), move(BLUE, 20, 33), move(GREEN, 10, 11)));
+    }
+
+    @Test public void testMatchesEagerCombinationsOnRandomMoves() {
+        Random random = new Random(7);
+        Detective[] detectives = Detective.values();
+        for(int trial = 0; trial < 200; trial++){
+            List<List<Move>> playerMoves = new ArrayList<>();
+            int players = 1 + random.nextInt(detectives.length);
+            for(int p = 0; p < players; p++){
+                //Few destinations, so clashes are common
+                List<Integer> destinations = new ArrayList<>(List.of(1, 2, 3, 4, 5, 6));
+                Collections.shuffle(destinations, random);
+                List<Move> moves = new ArrayList<>();
+                int count = random.nextInt(5);
+                for(int m = 0; m < count; m++)
+                    moves.add(move(detectives[p], 100 + p, destinations.get(m)));
+                playerMoves.add(moves);
+            }
+            List<List<Move>> lazy = lazyCombinations(playerMoves);
+            assertThat(lazy).doesNotHaveDuplicates();
+            assertThat(lazy).containsExactlyInAnyOrderElementsOf(eagerCombinations(playerMoves));
+        }
+    }
+
+    @Test public void testDetectiveWithNoMovesMeansNoCombinations() {
+        List<List<Move>> playerMoves = List.of(List.of(move(RED, 1, 8)), List.of());
+        assertThat(new DetectiveMoves(playerMoves)).isEmpty();
+        assertThat(eagerCombinations(playerMoves)).isEmpty();
+    }
+
+    @Test public void testIteratorThrowsWhenDone() {
+        var iterator = new DetectiveMoves(List.of(List.of(move(RED, 1, 8)))).iterator();
+        assertThat(iterator.next()).containsExactly(move(RED, 1, 8));
+        assertThat(iterator.hasNext()).isFalse();
+        assertThatThrownBy(iterator::next).isInstanceOf(NoSuchElementException.class);
+    }
+
+}
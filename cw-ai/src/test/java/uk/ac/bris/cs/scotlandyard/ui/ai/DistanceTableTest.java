@@ -0,0 +1,136 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.graph.MutableValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link DistanceTable}
+ */
+public class DistanceTableTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    //A line of four nodes from first, by taxi, bus then underground, and a pair of nodes off on their own
+    private static ImmutableValueGraph<Integer, ImmutableSet<Transport>> smallGraph(int first) {
+        MutableValueGraph<Integer, ImmutableSet<Transport>> graph = ValueGraphBuilder.undirected().build();
+        graph.putEdgeValue(first, first + 1, ImmutableSet.of(Transport.TAXI));
+        graph.putEdgeValue(first + 1, first + 2, ImmutableSet.of(Transport.BUS));
+        graph.putEdgeValue(first + 2, first + 3, ImmutableSet.of(Transport.UNDERGROUND));
+        graph.putEdgeValue(first + 4, first + 5, ImmutableSet.of(Transport.FERRY));
+        return ImmutableValueGraph.copyOf(graph);
+    }
+
+    //A plain breadth first search on the graph itself
+    private static int distance(ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph, int source,
+                                int destination) {
+        Map<Integer, Integer> distances = new HashMap<>(Map.of(source, 0));
+        Deque<Integer> queue = new ArrayDeque<>(List.of(source));
+        while(!queue.isEmpty()){
+            int u = queue.poll();
+            for(int v : graph.adjacentNodes(u)){
+                if(!distances.containsKey(v)){
+                    distances.put(v, distances.get(u) + 1);
+                    queue.add(v);
+                }
+            }
+        }
+        return distances.getOrDefault(destination, Integer.MAX_VALUE);
+    }
+
+    @Test public void testDistancesOnSmallGraph() {
+        DistanceTable table = DistanceTable.of(smallGraph(1), null);
+        assertThat(table.distance(1, 1)).isEqualTo(0);
+        assertThat(table.distance(1, 2)).isEqualTo(1);
+        assertThat(table.distance(1, 3)).isEqualTo(2);
+        assertThat(table.distance(1, 4)).isEqualTo(3);
+        assertThat(table.distance(4, 1)).isEqualTo(3);
+        assertThat(table.distance(5, 6)).isEqualTo(1);
+    }
+
+    @Test public void testUnreachableIsMaxValue() {
+        DistanceTable table = DistanceTable.of(smallGraph(1), null);
+        assertThat(table.distance(1, 5)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(table.distance(6, 4)).isEqualTo(Integer.MAX_VALUE);
+        //0 isn't a node of the graph at all
+        assertThat(table.distance(0, 1)).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test public void testDistancesOnStandardGraphMatchPlainSearch() throws IOException {
+        ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph = ScotlandYard.standardGraph();
+        DistanceTable table = DistanceTable.of(graph, null);
+        for(int source : List.of(1, 13, 46, 108, 157, 199))
+            for(int destination : graph.nodes())
+                assertThat(table.distance(source, destination))
+                        .as("%d to %d", source, destination)
+                        .isEqualTo(distance(graph, source, destination));
+    }
+
+    @Test public void testCacheDirectoryPropertySavesTable() throws IOException {
+        Path directory = folder.newFolder("distances").toPath();
+        //Tables are shared by graph, so this one's graph can't have been seen by any other test
+        ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph = smallGraph(20);
+        String previous = System.setProperty(DistanceTable.CACHE_DIRECTORY_PROPERTY, directory.toString());
+        DistanceTable table;
+        try{
+            table = DistanceTable.of(graph);
+        }
+        finally{
+            if(previous == null) System.clearProperty(DistanceTable.CACHE_DIRECTORY_PROPERTY);
+            else System.setProperty(DistanceTable.CACHE_DIRECTORY_PROPERTY, previous);
+        }
+        List<Path> files;
+        try(Stream<Path> listing = Files.list(directory)){
+            files = listing.collect(Collectors.toList());
+        }
+        assertThat(files).hasSize(1);
+        assertThat(files.get(0).getFileName().toString()).matches("distances-[0-9a-f]{16}\\.bin");
+        assertThat(Files.readAllBytes(files.get(0)))
+                .isEqualTo(DistanceTable.runBreadthFirstSearch(CompiledGraph.of(graph)));
+        assertThat(table.distance(20, 23)).isEqualTo(3);
+        assertThat(table.distance(20, 24)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(DistanceTable.of(graph)).isSameAs(table);
+    }
+
+    @Test public void testLoadReadsExistingFile() throws IOException {
+        CompiledGraph graph = CompiledGraph.of(smallGraph(1));
+        Path file = folder.getRoot().toPath().resolve("cache").resolve("distances.bin");
+        assertThat(DistanceTable.load(graph, file).distance(1, 4)).isEqualTo(3);
+        //Change the saved distance, which a table mapped from the file should then give
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putShort((1 * graph.nodeBound() + 4) * Short.BYTES, (short)42);
+        Files.write(file, bytes);
+        assertThat(DistanceTable.load(graph, file).distance(1, 4)).isEqualTo(42);
+    }
+
+    @Test public void testLoadRewritesFileOfWrongSize() throws IOException {
+        CompiledGraph graph = CompiledGraph.of(smallGraph(1));
+        Path file = folder.newFile("distances.bin").toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+        DistanceTable table = DistanceTable.load(graph, file);
+        assertThat(table.distance(1, 4)).isEqualTo(3);
+        assertThat(Files.readAllBytes(file)).isEqualTo(DistanceTable.runBreadthFirstSearch(graph));
+    }
+
+}
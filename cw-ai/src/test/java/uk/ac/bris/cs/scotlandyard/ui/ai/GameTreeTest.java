@@ -0,0 +1,269 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.CompactGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+
+/**
+ * Tests for {@link GameTree}, on boards from the start of a game with Mr X on 46
+ */
+public class GameTreeTest {
+
+    private static GameSetup setup;
+
+    @BeforeClass public static void setUp() throws IOException {
+        setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+    }
+
+    private static BoardToGameState start() {
+        Player mrX = new Player(MRX, ScotlandYard.defaultMrXTickets(), 46);
+        ImmutableList<Player> detectives = ImmutableList.of(
+                new Player(RED, ScotlandYard.defaultDetectiveTickets(), 155),
+                new Player(BLUE, ScotlandYard.defaultDetectiveTickets(), 94));
+        return new BoardToGameState(new CompactGameStateFactory().build(setup, mrX, detectives), List.of(MRX), 46,
+                null);
+    }
+
+    //The single moves at board using ticket, in a fixed order
+    private static List<Move> singleMoves(Board board, Ticket ticket) {
+        List<Move> moves = new ArrayList<>();
+        for(Move m : board.getAvailableMoves())
+            if(m instanceof SingleMove && ((SingleMove)m).ticket == ticket)
+                moves.add(m);
+        moves.sort(Comparator.comparing(Move::toString));
+        return moves;
+    }
+
+    private static Board advance(Board board, Move move) {
+        return ((BoardToGameState)board).forceAdvance(move);
+    }
+
+    private static int addChild(GameTree tree, int parent, Move move) {
+        return tree.addChild(parent, List.of(move), advance(tree.board(parent), move));
+    }
+
+    @Test public void testFindChildFindsRootAndChildren() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        Move taxi = singleMoves(root, Ticket.TAXI).get(0);
+        Move bus = singleMoves(root, Ticket.BUS).get(0);
+        int taxiChild = addChild(tree, tree.root(), taxi);
+        int busChild = addChild(tree, tree.root(), bus);
+        assertThat(tree.findChild(root)).isEqualTo(tree.root());
+        assertThat(tree.findChild(advance(root, taxi))).isEqualTo(taxiChild);
+        assertThat(tree.findChild(advance(root, bus))).isEqualTo(busChild);
+        assertThat(tree.findChild(advance(root, singleMoves(root, Ticket.UNDERGROUND).get(0))))
+                .isEqualTo(GameTree.NONE);
+    }
+
+    @Test public void testFindChildFindsChildAfterReRoot() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        Move taxi = singleMoves(root, Ticket.TAXI).get(0);
+        int child = addChild(tree, tree.root(), taxi);
+        //Builds the index for the old root
+        assertThat(tree.findChild(advance(root, taxi))).isEqualTo(child);
+        Move detectiveMove = singleMoves(tree.board(child), Ticket.TAXI).get(0);
+        int grandchild = addChild(tree, child, detectiveMove);
+        tree.reRoot(child);
+        assertThat(tree.root()).isEqualTo(child);
+        assertThat(tree.findChild(tree.board(child))).isEqualTo(child);
+        assertThat(tree.findChild(advance(tree.board(child), detectiveMove))).isEqualTo(grandchild);
+        //Children added to the new root once it has been indexed are found too
+        Move otherMove = singleMoves(tree.board(child), Ticket.BUS).get(0);
+        int added = addChild(tree, child, otherMove);
+        assertThat(tree.findChild(advance(tree.board(child), otherMove))).isEqualTo(added);
+    }
+
+    @Test public void testFindChildSkipsRemovedChild() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        Move taxi = singleMoves(root, Ticket.TAXI).get(0);
+        Move bus = singleMoves(root, Ticket.BUS).get(0);
+        int taxiChild = addChild(tree, tree.root(), taxi);
+        int busChild = addChild(tree, tree.root(), bus);
+        assertThat(tree.findChild(advance(root, taxi))).isEqualTo(taxiChild);
+        tree.removeChild(tree.root(), taxiChild);
+        assertThat(tree.findChild(advance(root, taxi))).isEqualTo(GameTree.NONE);
+        assertThat(tree.findChild(advance(root, bus))).isEqualTo(busChild);
+    }
+
+    @Test public void testFindChildFallsBackToSameKeyChildAfterRemoveChild() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        //Once Mr X has moved his location is hidden, so his taxi moves all reach the same position
+        List<Move> taxis = singleMoves(root, Ticket.TAXI);
+        assertThat(taxis.size()).isGreaterThanOrEqualTo(2);
+        int first = addChild(tree, tree.root(), taxis.get(0));
+        int second = addChild(tree, tree.root(), taxis.get(1));
+        assertThat(tree.key(first)).isEqualTo(tree.key(second));
+        assertThat(tree.findChild(advance(root, taxis.get(1)))).isEqualTo(first);
+        tree.removeChild(tree.root(), first);
+        assertThat(tree.findChild(advance(root, taxis.get(1)))).isEqualTo(second);
+    }
+
+    @Test public void testAddChildLinksChildrenInOrder() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        assertThat(tree.isLeaf(tree.root())).isTrue();
+        assertThat(tree.moves(tree.root())).isNull();
+        List<Move> taxis = singleMoves(root, Ticket.TAXI);
+        int first = addChild(tree, tree.root(), taxis.get(0));
+        int second = addChild(tree, tree.root(), taxis.get(1));
+        assertThat(tree.isLeaf(tree.root())).isFalse();
+        assertThat(tree.firstChild(tree.root())).isEqualTo(first);
+        assertThat(tree.nextSibling(first)).isEqualTo(second);
+        assertThat(tree.nextSibling(second)).isEqualTo(GameTree.NONE);
+        assertThat(tree.moves(first)).containsExactly(taxis.get(0));
+        assertThat(tree.moves(second)).containsExactly(taxis.get(1));
+        assertThat(tree.isMaximising(tree.root())).isTrue();
+        assertThat(tree.isMaximising(first)).isFalse();
+        assertThat(tree.addChild(GameTree.NONE, List.of(taxis.get(0)), root)).isEqualTo(GameTree.NONE);
+    }
+
+    @Test public void testAddChildStopsAtMaxDepth() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 2, true);
+        int child = addChild(tree, tree.root(), singleMoves(root, Ticket.TAXI).get(0));
+        int grandchild = addChild(tree, child, singleMoves(tree.board(child), Ticket.TAXI).get(0));
+        assertThat(grandchild).isNotEqualTo(GameTree.NONE);
+        assertThat(addChild(tree, grandchild, singleMoves(tree.board(grandchild), Ticket.TAXI).get(0)))
+                .isEqualTo(GameTree.NONE);
+        //The cap is counted from the root, so it moves down with it
+        tree.reRoot(child);
+        assertThat(addChild(tree, grandchild, singleMoves(tree.board(grandchild), Ticket.TAXI).get(0)))
+                .isNotEqualTo(GameTree.NONE);
+    }
+
+    @Test public void testBoardIsWorkedOutFromParentAndKept() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        assertThat(tree.board(tree.root())).isSameAs(root);
+        Move mrXMove = singleMoves(root, Ticket.BUS).get(0);
+        Board afterMrX = advance(root, mrXMove);
+        Move detectiveMove = singleMoves(afterMrX, Ticket.TAXI).get(0);
+        Board afterDetective = advance(afterMrX, detectiveMove);
+        int child = tree.addChild(tree.root(), List.of(mrXMove), afterMrX);
+        int grandchild = tree.addChild(child, List.of(detectiveMove), afterDetective);
+        //Worked out through child, which had no board yet either
+        Board board = tree.board(grandchild);
+        assertThat(board).isNotSameAs(afterDetective);
+        assertThat(GameTree.compareBoards(board, afterDetective)).isTrue();
+        assertThat(board.getMrXTravelLog()).isEqualTo(afterDetective.getMrXTravelLog());
+        assertThat(tree.board(grandchild)).isSameAs(board);
+        assertThat(GameTree.compareBoards(tree.board(child), afterMrX)).isTrue();
+    }
+
+    @Test public void testGraftCopiesSubtree() {
+        BoardToGameState root = start();
+        GameTree other = new GameTree(root, 3, true);
+        Move mrXMove = singleMoves(root, Ticket.TAXI).get(0);
+        int child = addChild(other, other.root(), mrXMove);
+        other.setScore(child, 5);
+        List<Move> detectiveMoves = singleMoves(other.board(child), Ticket.TAXI);
+        int firstGrandchild = addChild(other, child, detectiveMoves.get(0));
+        int secondGrandchild = addChild(other, child, detectiveMoves.get(1));
+        other.setScore(firstGrandchild, 5);
+        other.setScore(secondGrandchild, 9);
+
+        GameTree tree = new GameTree(root, 3, true);
+        int copy = tree.graft(tree.root(), List.of(mrXMove), other, child);
+        assertThat(tree.firstChild(tree.root())).isEqualTo(copy);
+        assertThat(tree.moves(copy)).containsExactly(mrXMove);
+        assertThat(tree.key(copy)).isEqualTo(other.key(child));
+        assertThat(tree.score(copy)).isEqualTo(5);
+        //Boards already worked out are shared rather than worked out again
+        assertThat(tree.board(copy)).isSameAs(other.board(child));
+        int first = tree.firstChild(copy);
+        int second = tree.nextSibling(first);
+        assertThat(tree.moves(first)).containsExactly(detectiveMoves.get(0));
+        assertThat(tree.moves(second)).containsExactly(detectiveMoves.get(1));
+        assertThat(tree.score(first)).isEqualTo(5);
+        assertThat(tree.score(second)).isEqualTo(9);
+        assertThat(tree.nextSibling(second)).isEqualTo(GameTree.NONE);
+    }
+
+    @Test public void testGraftLeavesOutWhatIsTooDeep() {
+        BoardToGameState root = start();
+        GameTree other = new GameTree(root, 3, true);
+        Move mrXMove = singleMoves(root, Ticket.TAXI).get(0);
+        int child = addChild(other, other.root(), mrXMove);
+        addChild(other, child, singleMoves(other.board(child), Ticket.TAXI).get(0));
+
+        GameTree tree = new GameTree(root, 1, true);
+        int copy = tree.graft(tree.root(), List.of(mrXMove), other, child);
+        assertThat(copy).isNotEqualTo(GameTree.NONE);
+        assertThat(tree.isLeaf(copy)).isTrue();
+        assertThat(tree.graft(copy, List.of(mrXMove), other, child)).isEqualTo(GameTree.NONE);
+    }
+
+    @Test public void testScoreIsWorkedOutAgainAfterRemoveChild() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        List<Move> taxis = singleMoves(root, Ticket.TAXI);
+        int first = addChild(tree, tree.root(), taxis.get(0));
+        int second = addChild(tree, tree.root(), taxis.get(1));
+        List<Move> detectiveMoves = singleMoves(tree.board(first), Ticket.TAXI);
+        int low = addChild(tree, first, detectiveMoves.get(0));
+        int high = addChild(tree, first, detectiveMoves.get(1));
+        tree.setScore(low, 2);
+        tree.setScore(high, 8);
+        //The minimiser picks low, then the maximiser picks first
+        tree.setScore(first, 2);
+        tree.setScore(second, 1);
+        tree.setScore(tree.root(), 2);
+
+        tree.removeChild(first, low);
+        assertThat(tree.score(first)).isEqualTo(8);
+        assertThat(tree.score(tree.root())).isEqualTo(8);
+
+        tree.removeChild(tree.root(), first);
+        assertThat(tree.score(tree.root())).isEqualTo(1);
+        //A node left with no children keeps the score it had
+        tree.removeChild(tree.root(), second);
+        assertThat(tree.score(tree.root())).isEqualTo(1);
+    }
+
+    @Test public void testBestChildIsForgottenWhenRemovedOrReRooted() {
+        BoardToGameState root = start();
+        GameTree tree = new GameTree(root, 3, true);
+        List<Move> taxis = singleMoves(root, Ticket.TAXI);
+        int first = addChild(tree, tree.root(), taxis.get(0));
+        int second = addChild(tree, tree.root(), taxis.get(1));
+        assertThat(tree.bestChild()).isEqualTo(GameTree.NONE);
+        //Tied scores, so only bestChild tells which child the root's score came from
+        tree.setScore(first, 3);
+        tree.setScore(second, 3);
+        tree.setBestChild(second);
+        assertThat(tree.bestChild()).isEqualTo(second);
+
+        tree.removeChild(tree.root(), first);
+        assertThat(tree.bestChild()).isEqualTo(second);
+        tree.removeChild(tree.root(), second);
+        assertThat(tree.bestChild()).isEqualTo(GameTree.NONE);
+
+        int third = addChild(tree, tree.root(), taxis.get(2));
+        tree.setBestChild(third);
+        tree.reRoot(third);
+        assertThat(tree.bestChild()).isEqualTo(GameTree.NONE);
+    }
+
+}
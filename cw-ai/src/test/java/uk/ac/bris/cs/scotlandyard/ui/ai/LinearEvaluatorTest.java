@@ -0,0 +1,56 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for loading a {@link LinearEvaluator}'s weights
+ */
+public class LinearEvaluatorTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String... lines) throws IOException {
+        Path file = folder.newFile("weights.properties").toPath();
+        Files.write(file, List.of(lines));
+        return file;
+    }
+
+    @Test public void testLoadReadsBothPlayersWeights() throws IOException {
+        LinearEvaluator evaluator = LinearEvaluator.load(write(
+                "# Tuned weights",
+                "mrx.distance=-300",
+                "detectives.expected_distance=40"));
+        assertThat(evaluator.weights(true)).isEqualTo(Weights.MRX_DEFAULTS.with(Feature.DISTANCE, -300));
+        assertThat(evaluator.weights(false))
+                .isEqualTo(Weights.DETECTIVE_DEFAULTS.with(Feature.EXPECTED_DISTANCE, 40));
+    }
+
+    @Test public void testLoadKeepsDefaultsForEmptyFile() throws IOException {
+        LinearEvaluator evaluator = LinearEvaluator.load(write());
+        assertThat(evaluator.weights(true)).isEqualTo(Weights.MRX_DEFAULTS);
+        assertThat(evaluator.weights(false)).isEqualTo(Weights.DETECTIVE_DEFAULTS);
+    }
+
+    @Test public void testLoadRejectsWeightThatIsNotANumber() throws IOException {
+        Path file = write("mrx.visibility=high");
+        assertThatThrownBy(() -> LinearEvaluator.load(file))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("mrx.visibility");
+    }
+
+    @Test public void testLoadThrowsForMissingFile() {
+        Path file = folder.getRoot().toPath().resolve("missing.properties");
+        assertThatThrownBy(() -> LinearEvaluator.load(file)).isInstanceOf(IOException.class);
+    }
+
+}
@@ -0,0 +1,94 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.CompactGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+
+/**
+ * Tests for the parts of {@link MiniMaxAI} that don't need a search
+ */
+public class MiniMaxAITest {
+
+    private static final List<Integer> POSSIBLE = List.of(13, 26, 29, 34, 50, 53, 91, 94, 103, 112, 117, 132);
+    private static final Move TO_33 = new SingleMove(MRX, 46, Ticket.TAXI, 33);
+    private static final Move TO_45 = new SingleMove(MRX, 46, Ticket.TAXI, 45);
+
+    //A searched tree with a child for each of Mr X's taxi moves from 46, to 33 and to 45. best is the destination
+    //of the child the root's score came from
+    private static GameTree searched(int scoreTo33, int scoreTo45, int best) throws IOException {
+        GameSetup setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+        BoardToGameState root = new BoardToGameState(new CompactGameStateFactory().build(setup,
+                new Player(MRX, ScotlandYard.defaultMrXTickets(), 46),
+                ImmutableList.of(new Player(RED, ScotlandYard.defaultDetectiveTickets(), 13))), List.of(MRX), 46, null);
+        GameTree tree = new GameTree(root, 1, true);
+        int to33 = tree.addChild(tree.root(), List.of(TO_33), root.forceAdvance(TO_33));
+        int to45 = tree.addChild(tree.root(), List.of(TO_45), root.forceAdvance(TO_45));
+        tree.setScore(to33, scoreTo33);
+        tree.setScore(to45, scoreTo45);
+        tree.setBestChild(best == 33 ? to33 : to45);
+        return tree;
+    }
+
+    @Test public void testVoteOnMovesIgnoresScoresOfChildrenThatWereCutOff() throws IOException {
+        //In the first two guesses 45 was cut off with a bound that looks better than 33's exact score
+        GameTree[] trees = {searched(5, 0, 33), searched(5, 0, 33), searched(9, 4, 45)};
+        assertThat(MiniMaxAI.voteOnMoves(trees)).containsExactly(TO_33);
+    }
+
+    @Test public void testVoteOnMovesBreaksTiesOnAverageExactScore() throws IOException {
+        GameTree[] trees = {searched(6, 9, 33), null, searched(9, 4, 45), searched(2, 9, 33), searched(9, 5, 45)};
+        //Both have two votes, and 33's average of 4 is lower than 45's 4.5
+        assertThat(MiniMaxAI.voteOnMoves(trees)).containsExactly(TO_33);
+        assertThat(MiniMaxAI.voteOnMoves(new GameTree[]{null})).isNull();
+    }
+
+    @Test public void testSampleMrXLocationsHasNoRepeats() {
+        for(int seed = 0; seed < 100; seed++){
+            List<Integer> samples = MiniMaxAI.sampleMrXLocations(POSSIBLE, u -> 1, 5, new Random(seed));
+            assertThat(samples).hasSize(5).doesNotHaveDuplicates();
+            assertThat(POSSIBLE).containsAll(samples);
+        }
+    }
+
+    @Test public void testSampleMrXLocationsReturnsEverythingIfNotEnough() {
+        assertThat(MiniMaxAI.sampleMrXLocations(POSSIBLE, u -> 1, POSSIBLE.size(), new Random(0)))
+                .containsExactlyElementsOf(POSSIBLE);
+        assertThat(MiniMaxAI.sampleMrXLocations(POSSIBLE, u -> 1, 100, new Random(0)))
+                .containsExactlyElementsOf(POSSIBLE);
+    }
+
+    @Test public void testSampleMrXLocationsOnlyPicksUnweightedOnceWeightedAreUsedUp() {
+        for(int seed = 0; seed < 100; seed++){
+            List<Integer> samples = MiniMaxAI.sampleMrXLocations(POSSIBLE, u -> u == 50 || u == 91 ? 0.5 : 0, 3,
+                    new Random(seed));
+            assertThat(samples).hasSize(3).doesNotHaveDuplicates();
+            assertThat(samples.subList(0, 2)).containsExactlyInAnyOrder(50, 91);
+        }
+    }
+
+    @Test public void testSampleMrXLocationsFavoursLikelierLocations() {
+        Random random = new Random(0);
+        int likely = 0;
+        for(int i = 0; i < 1000; i++){
+            if(MiniMaxAI.sampleMrXLocations(POSSIBLE, u -> u == 13 ? 10 : 1, 1, random).contains(13))
+                likely++;
+        }
+        //10 out of 21
+        assertThat(likely).isBetween(400, 550);
+    }
+
+}
@@ -0,0 +1,108 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.CompactGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+
+/**
+ * Tests for {@link MrXBelief}, on the standard map
+ */
+public class MrXBeliefTest {
+
+    private static GameSetup hiddenSetup;
+    private static GameSetup revealSetup;
+    private static CompiledGraph graph;
+
+    @BeforeClass public static void setUp() throws IOException {
+        //Shared, as beliefs are only equal if they are on the same graph
+        var standardGraph = ScotlandYard.standardGraph();
+        hiddenSetup = new GameSetup(standardGraph, ScotlandYard.STANDARD24ROUNDS);
+        //The same, but with Mr X shown after his first move
+        List<Boolean> rounds = new ArrayList<>(Collections.nCopies(24, false));
+        rounds.set(0, true);
+        revealSetup = new GameSetup(standardGraph, ImmutableList.copyOf(rounds));
+        graph = CompiledGraph.of(hiddenSetup.graph);
+    }
+
+    private static GameState start(GameSetup setup, int mrX, int red, int blue) {
+        return new CompactGameStateFactory().build(setup,
+                new Player(MRX, ScotlandYard.defaultMrXTickets(), mrX),
+                ImmutableList.of(
+                        new Player(RED, ScotlandYard.defaultDetectiveTickets(), red),
+                        new Player(BLUE, ScotlandYard.defaultDetectiveTickets(), blue)));
+    }
+
+    @Test public void testHiddenTaxiMoveExpandsToTaxiNeighbours() {
+        GameState state = start(hiddenSetup, 46, 13, 58);
+        GameState moved = state.advance(new SingleMove(MRX, 46, Ticket.TAXI, 33));
+        //46 goes to 33, 45, 47 and 61 by taxi, and to 34, 58 and 78 by bus
+        assertThat(MrXBelief.of(graph, List.of(46)).after(moved, 0).nodes()).containsExactly(33, 45, 47, 61);
+    }
+
+    @Test public void testHiddenSecretMoveExpandsToEveryNeighbour() {
+        GameState state = start(hiddenSetup, 157, 13, 58);
+        GameState moved = state.advance(new SingleMove(MRX, 157, Ticket.SECRET, 194));
+        //Ferries included
+        assertThat(MrXBelief.of(graph, List.of(157)).after(moved, 0).nodes())
+                .containsExactly(115, 133, 142, 156, 158, 170, 185, 194);
+    }
+
+    @Test public void testHiddenMoveFollowsEveryPossibleNode() {
+        GameState state = start(hiddenSetup, 46, 13, 58);
+        GameState moved = state.advance(new SingleMove(MRX, 46, Ticket.TAXI, 33));
+        //47 goes to 34, 46 and 62 by taxi
+        assertThat(MrXBelief.of(graph, List.of(46, 47)).after(moved, 0).nodes())
+                .containsExactly(33, 34, 45, 46, 47, 61, 62);
+    }
+
+    @Test public void testRevealCollapsesToOneNode() {
+        GameState state = start(revealSetup, 157, 13, 58);
+        GameState moved = state.advance(new SingleMove(MRX, 157, Ticket.SECRET, 194));
+        MrXBelief belief = MrXBelief.of(graph, ScotlandYard.MRX_LOCATIONS).after(moved, 0);
+        assertThat(belief.nodes()).containsExactly(194);
+        assertThat(belief.size()).isEqualTo(1);
+        assertThat(MrXBelief.fromLog(moved)).isEqualTo(belief);
+    }
+
+    @Test public void testNodesDetectivesAreOnAreRemoved() {
+        GameState state = start(hiddenSetup, 46, 47, 58);
+        GameState moved = state.advance(new SingleMove(MRX, 46, Ticket.TAXI, 33));
+        MrXBelief belief = MrXBelief.of(graph, List.of(46)).after(moved, 0);
+        assertThat(belief.nodes()).containsExactly(33, 45, 61);
+        assertThat(belief.contains(47)).isFalse();
+        //A detective moving onto a node shows Mr X isn't there, with no new log entries to follow
+        GameState detectivesMoved = moved
+                .advance(new SingleMove(RED, 47, Ticket.TAXI, 34))
+                .advance(new SingleMove(BLUE, 58, Ticket.TAXI, 45));
+        assertThat(belief.after(detectivesMoved, 1).nodes()).containsExactly(33, 61);
+        assertThat(belief.withoutDetectives(detectivesMoved).nodes()).containsExactly(33, 61);
+    }
+
+    @Test public void testFromLogAtStartIsEveryStartingLocationWithoutDetectives() {
+        GameState state = start(hiddenSetup, ScotlandYard.MRX_LOCATIONS.get(0), ScotlandYard.MRX_LOCATIONS.get(1),
+                58);
+        MrXBelief belief = MrXBelief.fromLog(state);
+        assertThat(belief.size()).isEqualTo(ScotlandYard.MRX_LOCATIONS.size() - 1);
+        assertThat(belief.contains(ScotlandYard.MRX_LOCATIONS.get(0))).isTrue();
+        assertThat(belief.contains(ScotlandYard.MRX_LOCATIONS.get(1))).isFalse();
+    }
+
+}
@@ -0,0 +1,115 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link Simulator}'s argument parsing, AI lookup and latency figures
+ */
+public class SimulatorTest {
+
+    private static Simulator parse(String... args) {
+        Simulator simulator = new Simulator();
+        simulator.parse(args);
+        return simulator;
+    }
+
+    @Test public void testParseReadsEveryOption() {
+        Simulator simulator = parse("--games", "3", "--seed", "-7", "--mrx", "DumbMrXAI",
+                "--detectives", "Monte Carlo", "--timeout", "1.5", "--list");
+        assertThat(simulator.games).isEqualTo(3);
+        assertThat(simulator.seed).isEqualTo(-7);
+        assertThat(simulator.mrX).isEqualTo("DumbMrXAI");
+        assertThat(simulator.detectives).isEqualTo("Monte Carlo");
+        assertThat(simulator.timeout).isEqualTo(1.5);
+        assertThat(simulator.list).isTrue();
+    }
+
+    @Test public void testParseKeepsDefaults() {
+        Simulator simulator = parse();
+        assertThat(simulator.games).isEqualTo(10);
+        assertThat(simulator.seed).isEqualTo(0);
+        assertThat(simulator.mrX).isEqualTo("MiniMaxAI");
+        assertThat(simulator.detectives).isEqualTo("MiniMaxAI");
+        assertThat(simulator.timeout).isEqualTo(0);
+        assertThat(simulator.list).isFalse();
+    }
+
+    @Test public void testParseRejectsUnknownOption() {
+        assertThatThrownBy(() -> parse("--rounds", "3"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown option --rounds");
+    }
+
+    @Test public void testParseRejectsMissingValue() {
+        assertThatThrownBy(() -> parse("--games", "3", "--seed"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing value for --seed");
+    }
+
+    @Test public void testParseRejectsValueThatIsNotANumber() {
+        assertThatThrownBy(() -> parse("--games", "three"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("--games");
+    }
+
+    @Test public void testParseRejectsNegativeGames() {
+        assertThatThrownBy(() -> parse("--games", "-1"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("negative");
+        assertThatThrownBy(() -> parse("--timeout", "-0.5"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("negative");
+    }
+
+    @Test public void testFindAiMatchesNameOrClassName() {
+        List<Ai> ais = List.of(new DumbMrXAI(), new MonteCarloAI(), new MiniMaxAI());
+        assertThat(Simulator.findAi(ais, "Monte Carlo")).isEqualTo(MonteCarloAI.class);
+        assertThat(Simulator.findAi(ais, "MonteCarloAI")).isEqualTo(MonteCarloAI.class);
+        assertThat(Simulator.findAi(ais, MiniMaxAI.class.getName())).isEqualTo(MiniMaxAI.class);
+        assertThat(Simulator.findAi(ais, "Dumb Mr X AI")).isEqualTo(DumbMrXAI.class);
+    }
+
+    @Test public void testFindAiRejectsUnknownName() {
+        List<Ai> ais = List.of(new DumbMrXAI());
+        assertThatThrownBy(() -> Simulator.findAi(ais, "MiniMaxAI"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No AI called MiniMaxAI");
+        //Names have to match exactly
+        assertThatThrownBy(() -> Simulator.findAi(ais, "dumbmrxai"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test public void testPercentileOfNoMovesIsZero() {
+        Simulator.Latencies latencies = new Simulator.Latencies();
+        assertThat(latencies.percentile(0.5)).isEqualTo(0);
+        assertThat(latencies.mean()).isEqualTo(0);
+        assertThat(latencies.count()).isEqualTo(0);
+    }
+
+    @Test public void testPercentileIsNearestRank() {
+        Simulator.Latencies latencies = new Simulator.Latencies();
+        //1ms to 100ms, added out of order and past the first array's size
+        for(int i = 100; i >= 1; i--)
+            latencies.add(i * 1_000_000L);
+        assertThat(latencies.count()).isEqualTo(100);
+        assertThat(latencies.percentile(0.5)).isEqualTo(50);
+        assertThat(latencies.percentile(0.95)).isEqualTo(95);
+        assertThat(latencies.percentile(1)).isEqualTo(100);
+        assertThat(latencies.percentile(0)).isEqualTo(1);
+        assertThat(latencies.mean()).isEqualTo(50.5);
+    }
+
+    @Test public void testPercentileOfOneMove() {
+        Simulator.Latencies latencies = new Simulator.Latencies();
+        latencies.add(2_500_000L);
+        assertThat(latencies.percentile(0.5)).isEqualTo(2.5);
+        assertThat(latencies.percentile(0.95)).isEqualTo(2.5);
+    }
+
+}
@@ -0,0 +1,105 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.bris.cs.scotlandyard.model.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TicketDistances} on the standard map
+ */
+public class TicketDistancesTest {
+
+    private static ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph;
+    private static DistanceTable table;
+
+    @BeforeClass public static void setUp() throws IOException {
+        graph = ScotlandYard.standardGraph();
+        table = DistanceTable.of(graph, null);
+    }
+
+    @Test public void testPlentyOfTicketsIsNeverShorterThanDistanceTable() {
+        TicketDistances distances = new TicketDistances(CompiledGraph.of(graph));
+        for(int source : List.of(1, 13, 67, 111, 153, 199))
+            for(int destination = 1; destination <= 199; destination++)
+                //Only ferries, which need secret tickets, can make the table shorter
+                assertThat(distances.distance(source, destination, 10, 10, 10))
+                        .as("%d to %d", source, destination)
+                        .isGreaterThanOrEqualTo(table.distance(source, destination));
+        assertThat(distances.distance(1, 79, 10, 10, 10)).isEqualTo(table.distance(1, 79)).isEqualTo(2);
+        assertThat(distances.distance(13, 89, 10, 10, 10)).isEqualTo(table.distance(13, 89)).isEqualTo(1);
+    }
+
+    @Test public void testNoUndergroundTicketsIsLongerThanDistanceTable() {
+        TicketDistances distances = new TicketDistances(CompiledGraph.of(graph));
+        //13 and 89 are one underground stop apart
+        assertThat(table.distance(13, 89)).isEqualTo(1);
+        assertThat(distances.distance(13, 89, 10, 10, 0)).isGreaterThan(table.distance(13, 89));
+    }
+
+    @Test public void testRunningOutOfTicketsIsUnreachable() {
+        TicketDistances distances = new TicketDistances(CompiledGraph.of(graph));
+        assertThat(distances.distance(1, 8, 0, 0, 0)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(distances.distance(1, 1, 0, 0, 0)).isEqualTo(0);
+        assertThat(distances.distance(1, 8, 1, 0, 0)).isEqualTo(1);
+        assertThat(distances.distance(1, 79, 1, 0, 0)).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test public void testUnknownNodesAreUnreachable() {
+        TicketDistances distances = new TicketDistances(CompiledGraph.of(graph));
+        assertThat(distances.distance(-1, 8, 10, 10, 10)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(distances.distance(1, 10_000, 10, 10, 10)).isEqualTo(Integer.MAX_VALUE);
+        assertThat(distances.distance(10_000, 1, 10, 10, 10)).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test public void testEvictedDistancesAreSearchedAgain() {
+        TicketDistances expected = new TicketDistances(CompiledGraph.of(graph));
+        //Far fewer slots than sources and buckets asked for, so most are replaced before they're asked for again
+        TicketDistances small = new TicketDistances(CompiledGraph.of(graph), 4);
+        for(int pass = 0; pass < 2; pass++)
+            for(int source = 1; source <= 199; source += 13)
+                for(int taxi = 0; taxi <= 9; taxi += 3)
+                    for(int destination = 1; destination <= 199; destination += 17)
+                        assertThat(small.distance(source, destination, taxi, 2, 1))
+                                .as("%d to %d with %d taxi", source, destination, taxi)
+                                .isEqualTo(expected.distance(source, destination, taxi, 2, 1));
+    }
+
+    @Test public void testSearchesOnManyThreadsAgree() throws Exception {
+        TicketDistances expected = new TicketDistances(CompiledGraph.of(graph));
+        TicketDistances shared = new TicketDistances(CompiledGraph.of(graph));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try{
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(int t = 0; t < 4; t++){
+                tasks.add(() -> {
+                    for(int source = 1; source <= 199; source += 7)
+                        for(int underground = 0; underground <= 2; underground++)
+                            for(int destination = 1; destination <= 199; destination += 11)
+                                assertThat(shared.distance(source, destination, 4, 3, underground))
+                                        .isEqualTo(expected.distance(source, destination, 4, 3, underground));
+                    return null;
+                });
+            }
+            for(Future<Void> f : executor.invokeAll(tasks))
+                f.get();
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TranspositionTable}
+ */
+public class TranspositionTableTest {
+
+    //Both hashes land in slot 5 of a table of 16
+    private static final long HASH = 0x1234_5678_0000_0005L;
+    private static final long COLLIDING = 0x7654_3210_0000_0015L;
+
+    @Test public void testStoredEntryIsFound() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 3, 42, TranspositionTable.EXACT);
+        long entry = table.probe(HASH);
+        assertThat(entry).isNotEqualTo(TranspositionTable.MISS);
+        assertThat(TranspositionTable.score(entry)).isEqualTo(42);
+        assertThat(TranspositionTable.depth(entry)).isEqualTo(3);
+        assertThat(TranspositionTable.bound(entry)).isEqualTo(TranspositionTable.EXACT);
+    }
+
+    @Test public void testEmptyTableMisses() {
+        TranspositionTable table = new TranspositionTable(4);
+        assertThat(table.probe(HASH)).isEqualTo(TranspositionTable.MISS);
+        assertThat(table.probe(0)).isEqualTo(TranspositionTable.MISS);
+    }
+
+    @Test public void testOtherPositionInSameSlotMisses() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 3, 42, TranspositionTable.EXACT);
+        assertThat(table.probe(COLLIDING)).isEqualTo(TranspositionTable.MISS);
+    }
+
+    @Test public void testBoundsAndNegativeScoresSurvivePacking() {
+        TranspositionTable table = new TranspositionTable(4);
+        int[] bounds = {TranspositionTable.EXACT, TranspositionTable.LOWER, TranspositionTable.UPPER};
+        int[] scores = {Integer.MIN_VALUE, -1000, -1, 0, 1, 1000, Integer.MAX_VALUE};
+        for(int bound : bounds){
+            for(int score : scores){
+                table.store(HASH, 7, score, bound);
+                long entry = table.probe(HASH);
+                assertThat(TranspositionTable.score(entry)).isEqualTo(score);
+                assertThat(TranspositionTable.depth(entry)).isEqualTo(7);
+                assertThat(TranspositionTable.bound(entry)).isEqualTo(bound);
+            }
+        }
+    }
+
+    @Test public void testDeeperEntryIsKeptOverShallowerOtherPosition() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 5, 42, TranspositionTable.EXACT);
+        table.store(COLLIDING, 2, 7, TranspositionTable.LOWER);
+        assertThat(TranspositionTable.score(table.probe(HASH))).isEqualTo(42);
+        assertThat(table.probe(COLLIDING)).isEqualTo(TranspositionTable.MISS);
+    }
+
+    @Test public void testDeeperOrEqualOtherPositionReplacesEntry() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 5, 42, TranspositionTable.EXACT);
+        table.store(COLLIDING, 5, 7, TranspositionTable.LOWER);
+        assertThat(table.probe(HASH)).isEqualTo(TranspositionTable.MISS);
+        assertThat(TranspositionTable.score(table.probe(COLLIDING))).isEqualTo(7);
+    }
+
+    @Test public void testSamePositionIsAlwaysReplaced() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 5, 42, TranspositionTable.EXACT);
+        table.store(HASH, 1, -3, TranspositionTable.UPPER);
+        long entry = table.probe(HASH);
+        assertThat(TranspositionTable.score(entry)).isEqualTo(-3);
+        assertThat(TranspositionTable.depth(entry)).isEqualTo(1);
+        assertThat(TranspositionTable.bound(entry)).isEqualTo(TranspositionTable.UPPER);
+    }
+
+    @Test public void testEntryFromEarlierSearchIsReplaced() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 5, 42, TranspositionTable.EXACT);
+        table.nextSearch();
+        table.store(COLLIDING, 1, 7, TranspositionTable.LOWER);
+        assertThat(table.probe(HASH)).isEqualTo(TranspositionTable.MISS);
+        assertThat(TranspositionTable.score(table.probe(COLLIDING))).isEqualTo(7);
+    }
+
+    @Test public void testEntryFromEarlierSearchCanStillBeFound() {
+        TranspositionTable table = new TranspositionTable(4);
+        table.store(HASH, 5, 42, TranspositionTable.EXACT);
+        table.nextSearch();
+        assertThat(TranspositionTable.score(table.probe(HASH))).isEqualTo(42);
+    }
+
+}
@@ -0,0 +1,57 @@
+package uk.ac.bris.cs.scotlandyard.ui.ai;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link Weights}
+ */
+public class WeightsTest {
+
+    @Test public void testParseReadsPrefixedWeights() {
+        Properties properties = new Properties();
+        properties.setProperty("mrx.distance", "-150");
+        properties.setProperty("mrx.ferry", " 2.5 ");
+        properties.setProperty("detectives.distance", "7");
+        Weights weights = Weights.parse(properties, "mrx.", Weights.MRX_DEFAULTS);
+        assertThat(weights.weight(Feature.DISTANCE)).isEqualTo(-150);
+        assertThat(weights.weight(Feature.FERRY)).isEqualTo(2.5);
+    }
+
+    @Test public void testParseKeepsDefaultsForMissingWeights() {
+        Properties properties = new Properties();
+        properties.setProperty("mrx.distance", "-150");
+        Weights weights = Weights.parse(properties, "mrx.", Weights.MRX_DEFAULTS);
+        assertThat(weights).isEqualTo(Weights.MRX_DEFAULTS.with(Feature.DISTANCE, -150));
+        for(Feature f : Feature.values())
+            if(f != Feature.DISTANCE)
+                assertThat(weights.weight(f)).isEqualTo(Weights.MRX_DEFAULTS.weight(f));
+        assertThat(Weights.parse(new Properties(), "mrx.", Weights.MRX_DEFAULTS)).isEqualTo(Weights.MRX_DEFAULTS);
+    }
+
+    @Test public void testParseRejectsWeightThatIsNotANumber() {
+        Properties properties = new Properties();
+        properties.setProperty("detectives.caught", "lots");
+        assertThatThrownBy(() -> Weights.parse(properties, "detectives.", Weights.DETECTIVE_DEFAULTS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("detectives.caught");
+    }
+
+    @Test public void testWithLeavesOriginalUnchanged() {
+        Weights changed = Weights.MRX_DEFAULTS.with(Feature.TAXI, 99);
+        assertThat(changed.weight(Feature.TAXI)).isEqualTo(99);
+        assertThat(Weights.MRX_DEFAULTS.weight(Feature.TAXI)).isEqualTo(5);
+    }
+
+    @Test public void testScoreIsWeightedSum() {
+        double[] features = new double[Feature.count()];
+        features[Feature.DISTANCE.ordinal()] = 2;
+        features[Feature.TAXI.ordinal()] = 3;
+        assertThat(Weights.MRX_DEFAULTS.score(features)).isEqualTo(-200 * 2 + 5 * 3);
+    }
+
+}
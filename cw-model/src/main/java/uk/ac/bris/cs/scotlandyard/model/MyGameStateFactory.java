@@ -25,36 +25,62 @@ import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
  */
 public final class MyGameStateFactory implements Factory<GameState> {
 
+	//What changed in a detective's move, so the next state can fix up the previous move set
+	//rather than generating every detective's moves again
+	private static final class MoveDelta{
+		private final ImmutableSet<Move> parentMoves;
+		private final Piece piece;
+		private final int source;
+		private final int destination;
+
+		private MoveDelta(ImmutableSet<Move> parentMoves, Piece piece, int source, int destination){
+			this.parentMoves = parentMoves;
+			this.piece = piece;
+			this.source = source;
+			this.destination = destination;
+		}
+	}
+
 	private final class MyGameState implements GameState{
 		private GameSetup setup;
+		private CompiledGraph graph;
 		private ImmutableSet<Piece> remaining;
 		private ImmutableList<LogEntry> log;
 		private Player mrX;
 		private List<Player> detectives;
 		private ImmutableList<Player> everyone;
+		private ImmutableSet<Piece> players;
 		private ImmutableSet<Move> moves;
 		private ImmutableSet<Piece> winner;
+		private MoveDelta delta;
 
 		private MyGameState(final GameSetup setup,
+							final CompiledGraph graph,
 							final ImmutableSet<Piece> remaining,
 							final ImmutableList<LogEntry> log,
 							final Player mrX,
-							final List<Player> detectives) {
+							final List<Player> detectives,
+							final MoveDelta delta) {
 			this.setup = setup;
+			this.delta = delta;
+			this.graph = graph;
 			this.remaining = remaining;
 			this.log = log;
 			this.mrX = mrX;
 			this.detectives = detectives;
-			this.moves = createAvailableMoves();
-            this.winner = createWinner();
-            if(!winner.isEmpty())
-                this.moves = ImmutableSet.<Move>builder().build();
+			//moves and winner are only worked out when first asked for, see getAvailableMoves and getWinner
 
 			List<Player> players = new ArrayList<>();
 			players.add(mrX);
 			players.addAll(detectives);
 
 			everyone = ImmutableList.copyOf(players);
+			//Built once here, as the search asks for it on every state it looks at
+			List<Piece> pieces = new ArrayList<>();
+			for(Player p : everyone){
+				pieces.add(p.piece());
+			}
+			this.players = ImmutableSet.copyOf(pieces);
 		}
 
 		class MyTicketBoard implements Board.TicketBoard
@@ -79,11 +105,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
 
 		@Override
 		public ImmutableSet<Piece> getPlayers() {
-			List<Piece> pieces = new ArrayList<>();
-			for(Player p : everyone){
-				pieces.add(p.piece());
-			}
-			return ImmutableSet.copyOf(pieces);
+			return players;
 		}
 
 		@Override
@@ -130,8 +152,8 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			}
 			if(!hasAnyTickets)
 				return false;
-			//if has no moves left
-			return createPlayerMoves(p).size() != 0;
+			//if has no moves left - a double move needs a single move to start with, so only check those
+			return createSingleMoves(p).size() != 0;
 		}
 
 		//creates the list of winners, separate from returning it
@@ -152,9 +174,11 @@ public final class MyGameStateFactory implements Factory<GameState> {
             return ImmutableSet.<Piece>builder().build();
         }
 
-        //returns the winner list
+        //returns the winner list, working it out the first time it is needed
 		@Override
 		public ImmutableSet<Piece> getWinner() {
+			if(winner == null)
+				winner = createWinner();
 		    return winner;
 		}
 
@@ -162,11 +186,14 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		private List<Move> createSingleMoves(Player p){
 			List<Move> moves = new ArrayList<>();
 			int u = p.location();
-			for(int v : setup.graph.adjacentNodes(u)) { //Single moves can only reach neighbour of current node
-				var optionalEdge = setup.graph.edgeValue(u, v);
-				if (optionalEdge.isPresent()) {
-					var edge = optionalEdge.get();
-					for (Transport tr : edge) { //Multiple methods of transport to each node
+			int[] neighbours = graph.neighbours(u);
+			byte[] transports = graph.transports(u);
+			for(int i = 0; i < neighbours.length; i++) { //Single moves can only reach neighbour of current node
+				int v = neighbours[i];
+				if (transports[i] != 0) {
+					for (Transport tr : Transport.values()) { //Multiple methods of transport to each node
+						if ((transports[i] & CompiledGraph.transportBit(tr)) == 0)
+							continue;
 						boolean isMoveAllowed = true;
 						Ticket t = tr.requiredTicket();
 						for (Player d : detectives) { //Detectives cannot overlap
@@ -200,9 +227,8 @@ public final class MyGameStateFactory implements Factory<GameState> {
 					for(Move m : moves){
 						//m must be a single move (taken from getSingleMoves(), so can cast without worry)
 						int destination = ((SingleMove)m).destination;
-						mrX = mrX.use(m.tickets()).at(destination); //Alter mrX to after performing single move
-						List<Move> newMoves = new ArrayList<>(createSingleMoves(mrX)); //Get moves (new) mrX can perform
-						mrX = mrX.give(m.tickets()).at(m.source()); //Revert mrX
+						Player movedMrX = p.use(m.tickets()).at(destination); //mrX after performing single move
+						List<Move> newMoves = new ArrayList<>(createSingleMoves(movedMrX)); //Get moves (new) mrX can perform
 						//Create new DoubleMove objects
 						for(Move n : newMoves){
 							dMoves.add(new DoubleMove(m.commencedBy(), m.source(), ((SingleMove)m).ticket,
@@ -229,11 +255,54 @@ public final class MyGameStateFactory implements Factory<GameState> {
 			return ImmutableSet.copyOf(moves);
 		}
 
+		//Works out the moves from the previous detective turn's moves. Only moves that start with the
+		//detective that moved, end at its new location or end at the location it left can be different
+		private ImmutableSet<Move> applyDelta(){
+			ImmutableSet.Builder<Move> newMoves = ImmutableSet.builder();
+			for(Move m : delta.parentMoves){
+				if(m.commencedBy().equals(delta.piece) || !remaining.contains(m.commencedBy()))
+					continue;
+				//Detectives only make single moves
+				if(((SingleMove)m).destination != delta.destination)
+					newMoves.add(m);
+			}
+			//Other detectives can now move into the node that was left
+			for(Player d : detectives){
+				if(d.piece().equals(delta.piece) || !remaining.contains(d.piece()))
+					continue;
+				for(Ticket t : Ticket.values()){
+					//Detectives never hold secret tickets
+					if(d.has(t) && graph.connects(d.location(), t, delta.source))
+						newMoves.add(new SingleMove(d.piece(), d.location(), t, delta.source));
+				}
+			}
+			return newMoves.build();
+		}
+
 		@Override
 		public ImmutableSet<Move> getAvailableMoves(){
+			if(moves == null){
+				if(!getWinner().isEmpty())
+					moves = ImmutableSet.<Move>builder().build();
+				else if(delta != null)
+					moves = applyDelta();
+				else
+					moves = createAvailableMoves();
+				//The previous move set is no longer needed
+				delta = null;
+			}
 			return moves;
 		}
 
+		//checks a move is legal, only generating the moving player's moves if the full set isn't known yet
+		private boolean isMoveAvailable(Player p, Move move){
+			if(moves != null || delta != null)
+				return getAvailableMoves().contains(move);
+			if(!remaining.contains(p.piece()) || !getWinner().isEmpty())
+				return false;
+			return createPlayerMoves(p).contains(move);
+		}
+
 		//creates list of either detectives who haven't gone this round yet OR Mr X
 		public ImmutableSet<Piece> createRemaining(Piece piece){
 			List<Piece> newRemaining = new ArrayList<>();
@@ -299,24 +368,27 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		    final Piece piece = move.commencedBy();
 		    Player newMrX = mrX;
 		    List<Player> newDetectives = detectives;
+		    MoveDelta newDelta = null;
 		    List<LogEntry> newLog = log;
 		    Set<Piece> newRemaining = remaining;
 
-		    //check move is legal
-		    if(!moves.contains(move))
-		    	throw new IllegalArgumentException();
 		    //Visitor to fetch destination of move
 			Visitor<Integer> v = new FunctionalVisitor<>((x -> x.destination),(x -> x.destination2));
+			boolean isPieceInGame = false;
 			//Update player location and tickets
 		    for(Player p : everyone){
 				if(p.piece().equals(piece)){
-					if(!remaining.contains(p.piece()))
+					//check move is legal
+					if(!isMoveAvailable(p, move))
 						throw new IllegalArgumentException();
+					isPieceInGame = true;
 					p = p.at(move.visit(v));
 					p = p.use(move.tickets());
 					if(!p.isMrX()){
 						newMrX = mrX.give(move.tickets());
 						newDetectives = updateDetectives(p);
+						if(moves != null)
+							newDelta = new MoveDelta(moves, piece, move.source(), p.location());
 						//mrX = mrX.give(move.tickets());
 						//detectives = updateDetectives(p);
 					}
@@ -328,10 +400,15 @@ public final class MyGameStateFactory implements Factory<GameState> {
 					}
 				}
 		    }
+		    if(!isPieceInGame)
+		    	throw new IllegalArgumentException();
 		    newRemaining = createRemaining(piece);
+		    //the move set can only be fixed up while it is still the detectives' turn
+		    if(newRemaining.contains(mrX.piece()))
+		    	newDelta = null;
 			//return new MyGameState(setup, remaining, log, mrX, detectives);
-			return new MyGameState(setup, ImmutableSet.copyOf(newRemaining),
-					ImmutableList.copyOf(newLog), newMrX, newDetectives);
+			return new MyGameState(setup, graph, ImmutableSet.copyOf(newRemaining),
+					ImmutableList.copyOf(newLog), newMrX, newDetectives, newDelta);
 		}
 	}
 
@@ -361,7 +438,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
 		ImmutableList<LogEntry> log = ImmutableList.<LogEntry>builder().build();
 		ImmutableSet<Piece> remaining = ImmutableSet.of(mrX.piece());
 
-		return new MyGameState(setup, remaining, log, mrX, detectives);
+		return new MyGameState(setup, CompiledGraph.of(setup.graph), remaining, log, mrX, detectives, null);
 
 	}
 
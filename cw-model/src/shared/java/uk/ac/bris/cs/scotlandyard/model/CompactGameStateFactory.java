@@ -0,0 +1,455 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Board.TicketBoard;
+import uk.ac.bris.cs.scotlandyard.model.Move.*;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * An alternative to {@link MyGameStateFactory} for simulations that advance a lot of states.
+ * Detective occupancy is kept as a bitset packed into longs (one bit per node) and every
+ * player's tickets live in one flat int array, so advancing a state only copies a few small
+ * arrays. Available moves, the winner and the travel log are only built when asked for.
+ */
+public final class CompactGameStateFactory implements Factory<GameState> {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Transport[] TRANSPORTS = Transport.values();
+	//Number of slots each player takes up in the ticket array
+	private static final int TICKET_TYPES = TICKETS.length;
+	//Mr X is always stored at index 0 of the per-player arrays
+	private static final int MRX = 0;
+	private static final int MRX_BIT = 1;
+
+	private static final Visitor<Integer> destinationVisitor =
+			new FunctionalVisitor<>(x -> x.destination, x -> x.destination2);
+
+	/**
+	 * Everything about a game that stays the same between its states
+	 */
+	private static final class Game {
+		final GameSetup setup;
+		final CompiledGraph graph;
+		final Piece[] pieces;
+		final ImmutableSet<Piece> players;
+		final ImmutableSet<Piece> detectiveWinners;
+		final ImmutableSet<Piece> mrXWinner;
+		//Bitmask over player indices with every detective set
+		final int detectiveBits;
+
+		Game(GameSetup setup, Player mrX, List<Player> detectives){
+			this.setup = setup;
+			this.graph = CompiledGraph.of(setup.graph);
+			this.pieces = new Piece[detectives.size() + 1];
+			pieces[MRX] = mrX.piece();
+			for(int i = 0; i < detectives.size(); i++)
+				pieces[i + 1] = detectives.get(i).piece();
+			this.players = ImmutableSet.copyOf(pieces);
+			this.detectiveWinners = ImmutableSet.copyOf(Arrays.asList(pieces).subList(1, pieces.length));
+			this.mrXWinner = ImmutableSet.of(mrX.piece());
+			this.detectiveBits = ((1 << pieces.length) - 1) & ~MRX_BIT;
+		}
+
+		int indexOf(Piece piece){
+			for(int i = 0; i < pieces.length; i++){
+				if(pieces[i].equals(piece))
+					return i;
+			}
+			return -1;
+		}
+	}
+
+	private static boolean isOccupied(long[] occupied, int node){
+		int word = node >>> 6;
+		return word < occupied.length && (occupied[word] & (1L << node)) != 0;
+	}
+
+	private static long[] setOccupied(long[] occupied, int node){
+		int word = node >>> 6;
+		if(word >= occupied.length)
+			occupied = Arrays.copyOf(occupied, word + 1);
+		occupied[word] |= 1L << node;
+		return occupied;
+	}
+
+	private static void clearOccupied(long[] occupied, int node){
+		int word = node >>> 6;
+		if(word < occupied.length)
+			occupied[word] &= ~(1L << node);
+	}
+
+	private static final class CompactGameState implements GameState {
+		private final Game game;
+		private final int[] locations;
+		//tickets[player * TICKET_TYPES + ticket.ordinal()]
+		private final int[] tickets;
+		//Bitset of nodes that have a detective on them
+		private final long[] occupied;
+		//Bitmask over player indices of who still has to move this round
+		private final int remaining;
+		private final LogEntry[] log;
+		private final int logSize;
+
+		//Built on demand
+		private ImmutableList<LogEntry> travelLog;
+		private ImmutableSet<Piece> winner;
+		private ImmutableSet<Move> moves;
+
+		private CompactGameState(final Game game,
+								 final int[] locations,
+								 final int[] tickets,
+								 final long[] occupied,
+								 final int remaining,
+								 final LogEntry[] log,
+								 final int logSize) {
+			this.game = game;
+			this.locations = locations;
+			this.tickets = tickets;
+			this.occupied = occupied;
+			this.remaining = remaining;
+			this.log = log;
+			this.logSize = logSize;
+		}
+
+		private int count(int player, Ticket ticket){
+			return tickets[player * TICKET_TYPES + ticket.ordinal()];
+		}
+
+		@Nonnull @Override
+		public GameSetup getSetup() {
+			return game.setup;
+		}
+
+		@Nonnull @Override
+		public ImmutableSet<Piece> getPlayers() {
+			return game.players;
+		}
+
+		@Nonnull @Override
+		public Optional<Integer> getDetectiveLocation(Detective detective) {
+			int player = game.indexOf(detective);
+			if(player <= MRX)
+				return Optional.empty();
+			return Optional.of(locations[player]);
+		}
+
+		@Nonnull @Override
+		public Optional<TicketBoard> getPlayerTickets(Piece piece) {
+			int player = game.indexOf(piece);
+			if(player < 0)
+				return Optional.empty();
+			return Optional.of(ticket -> count(player, ticket));
+		}
+
+		@Nonnull @Override
+		public ImmutableList<LogEntry> getMrXTravelLog() {
+			if(travelLog == null)
+				travelLog = ImmutableList.copyOf(Arrays.asList(log).subList(0, logSize));
+			return travelLog;
+		}
+
+		//Whether player can use ticket to travel along the edge u-v
+		private boolean canTravel(int player, int[] ticketCounts, int u, Ticket ticket, int v){
+			if(ticket == Ticket.DOUBLE || isOccupied(occupied, v))
+				return false;
+			if(ticketCounts[player * TICKET_TYPES + ticket.ordinal()] == 0)
+				return false;
+			//Secret tickets work on any edge, but only Mr X holds them
+			return game.graph.connects(u, ticket, v);
+		}
+
+		//Adds every single move player can make from u with the given tickets
+		//Returns early with true if out is null and any move exists
+		private boolean addSingleMoves(int player, int[] ticketCounts, int u, List<Move> out){
+			final Piece piece = game.pieces[player];
+			final int offset = player * TICKET_TYPES;
+			final boolean hasSecret = ticketCounts[offset + Ticket.SECRET.ordinal()] > 0;
+			final int[] neighbours = game.graph.neighbours(u);
+			final byte[] transports = game.graph.transports(u);
+			for(int i = 0; i < neighbours.length; i++){
+				int v = neighbours[i];
+				if(transports[i] == 0 || isOccupied(occupied, v))
+					continue;
+				for(Transport tr : TRANSPORTS){
+					if((transports[i] & CompiledGraph.transportBit(tr)) == 0)
+						continue;
+					Ticket t = tr.requiredTicket();
+					if(t != Ticket.SECRET && ticketCounts[offset + t.ordinal()] > 0){
+						if(out == null) return true;
+						out.add(new SingleMove(piece, u, t, v));
+					}
+				}
+				if(player == MRX && hasSecret){
+					if(out == null) return true;
+					out.add(new SingleMove(piece, u, Ticket.SECRET, v));
+				}
+			}
+			return false;
+		}
+
+		private boolean hasAnyMove(int player){
+			return addSingleMoves(player, tickets, locations[player], null);
+		}
+
+		private boolean canDoubleMove(){
+			return count(MRX, Ticket.DOUBLE) > 0 && game.setup.rounds.size() - 1 != logSize;
+		}
+
+		//Mirrors MyGameState's rules for who has won
+		private ImmutableSet<Piece> createWinner(){
+			if(remaining == MRX_BIT){
+				if(logSize == game.setup.rounds.size()) return game.mrXWinner;
+				if(!hasAnyMove(MRX)) return game.detectiveWinners;
+			}
+			boolean isMrXWon = true;
+			for(int d = 1; d < locations.length; d++){
+				if(locations[d] == locations[MRX])
+					return game.detectiveWinners;
+				if(isMrXWon && hasAnyMove(d))
+					isMrXWon = false;
+			}
+			if(isMrXWon) return game.mrXWinner;
+			return ImmutableSet.of();
+		}
+
+		@Nonnull @Override
+		public ImmutableSet<Piece> getWinner() {
+			if(winner == null)
+				winner = createWinner();
+			return winner;
+		}
+
+		private List<Move> createMrXMoves(){
+			List<Move> singleMoves = new ArrayList<>();
+			addSingleMoves(MRX, tickets, locations[MRX], singleMoves);
+			if(!canDoubleMove())
+				return singleMoves;
+			List<Move> moves = new ArrayList<>(singleMoves);
+			int[] afterFirst = Arrays.copyOf(tickets, TICKET_TYPES);
+			List<Move> secondMoves = new ArrayList<>();
+			for(Move m : singleMoves){
+				SingleMove first = (SingleMove)m;
+				afterFirst[first.ticket.ordinal()]--;
+				secondMoves.clear();
+				addSingleMoves(MRX, afterFirst, first.destination, secondMoves);
+				for(Move n : secondMoves){
+					SingleMove second = (SingleMove)n;
+					moves.add(new DoubleMove(first.commencedBy(), first.source(), first.ticket,
+							first.destination, second.ticket, second.destination));
+				}
+				afterFirst[first.ticket.ordinal()]++;
+			}
+			return moves;
+		}
+
+		@Nonnull @Override
+		public ImmutableSet<Move> getAvailableMoves() {
+			if(moves == null){
+				if(!getWinner().isEmpty())
+					moves = ImmutableSet.of();
+				else if(remaining == MRX_BIT)
+					moves = ImmutableSet.copyOf(createMrXMoves());
+				else{
+					List<Move> detectiveMoves = new ArrayList<>();
+					for(int d = 1; d < locations.length; d++){
+						if((remaining & (1 << d)) != 0)
+							addSingleMoves(d, tickets, locations[d], detectiveMoves);
+					}
+					moves = ImmutableSet.copyOf(detectiveMoves);
+				}
+			}
+			return moves;
+		}
+
+		//Checks a move against the rules directly instead of generating every available move
+		private boolean isLegal(Move move, int player){
+			if(moves != null)
+				return moves.contains(move);
+			if(player < 0 || (remaining & (1 << player)) == 0)
+				return false;
+			if(move.source() != locations[player] || !getWinner().isEmpty())
+				return false;
+			return move.visit(new FunctionalVisitor<>(
+					m -> canTravel(player, tickets, m.source(), m.ticket, m.destination),
+					m -> {
+						if(player != MRX || !canDoubleMove()) return false;
+						if(!canTravel(player, tickets, m.source(), m.ticket1, m.destination1))
+							return false;
+						int[] afterFirst = Arrays.copyOf(tickets, TICKET_TYPES);
+						afterFirst[m.ticket1.ordinal()]--;
+						return canTravel(player, afterFirst, m.destination1, m.ticket2, m.destination2);
+					}));
+		}
+
+		private LogEntry logEntry(Ticket ticket, int destination, int round){
+			if(game.setup.rounds.get(round))
+				return LogEntry.reveal(ticket, destination);
+			return LogEntry.hidden(ticket);
+		}
+
+		@Nonnull @Override
+		public GameState advance(Move move) {
+			final int player = game.indexOf(move.commencedBy());
+			if(!isLegal(move, player))
+				throw new IllegalArgumentException("Illegal move: " + move);
+			final int destination = move.visit(destinationVisitor);
+
+			int[] newLocations = locations.clone();
+			int[] newTickets = tickets.clone();
+			long[] newOccupied = occupied;
+			LogEntry[] newLog = log;
+			int newLogSize = logSize;
+
+			newLocations[player] = destination;
+			for(Ticket t : move.tickets()){
+				newTickets[player * TICKET_TYPES + t.ordinal()]--;
+				//Detectives hand their used tickets to Mr X
+				if(player != MRX)
+					newTickets[MRX * TICKET_TYPES + t.ordinal()]++;
+			}
+			if(player == MRX){
+				newLog = Arrays.copyOf(log, logSize + 2);
+				if(move instanceof DoubleMove){
+					DoubleMove m = (DoubleMove)move;
+					newLog[newLogSize] = logEntry(m.ticket1, m.destination1, newLogSize);
+					newLogSize++;
+					newLog[newLogSize] = logEntry(m.ticket2, m.destination2, newLogSize);
+					newLogSize++;
+				}
+				else{
+					SingleMove m = (SingleMove)move;
+					newLog[newLogSize] = logEntry(m.ticket, m.destination, newLogSize);
+					newLogSize++;
+				}
+			}
+			else{
+				newOccupied = occupied.clone();
+				clearOccupied(newOccupied, move.source());
+				newOccupied = setOccupied(newOccupied, destination);
+			}
+
+			return new CompactGameState(game, newLocations, newTickets,
+					newOccupied, nextRemaining(player), newLog, newLogSize);
+		}
+
+		//Works out who moves next. As in MyGameState, whether the other detectives can still move is
+		//checked on this state, before player's move frees up its old node or takes its new one
+		private int nextRemaining(int player){
+			if(player == MRX)
+				return game.detectiveBits;
+			int newRemaining = remaining & ~(1 << player);
+			//The last detective to move always hands over to Mr X
+			if(newRemaining == 0)
+				return MRX_BIT;
+			for(int d = 1; d < locations.length; d++){
+				if((newRemaining & (1 << d)) != 0 && !hasAnyMove(d))
+					newRemaining &= ~(1 << d);
+			}
+			return newRemaining == 0 ? MRX_BIT : newRemaining;
+		}
+	}
+
+	private static boolean enforceRules(final GameSetup setup, final Player mrX,
+										final ImmutableList<Player> detectives){
+		if(setup.rounds.isEmpty()) return false;
+		if(setup.graph.nodes().isEmpty()) return false;
+		if(!mrX.isMrX()) return false;
+		for(final Player d : detectives){
+			if(!d.isDetective()) return false;
+			if(d.has(Ticket.DOUBLE)) return false;
+			if(d.has(Ticket.SECRET)) return false;
+			for(final Player e : detectives){
+				if(d != e) {
+					if(d.piece().equals(e.piece())) return false;
+					if(d.location() == e.location()) return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Nonnull @Override public GameState build(
+			GameSetup setup,
+			Player mrX,
+			ImmutableList<Player> detectives){
+		Objects.requireNonNull(setup);
+		Objects.requireNonNull(mrX);
+		Objects.requireNonNull(detectives);
+		if(!enforceRules(setup, mrX, detectives)) throw new IllegalArgumentException();
+
+		return create(setup, mrX, detectives, new LogEntry[0], MRX_BIT);
+	}
+
+	/**
+	 * Copies a position part way through a game, such as the board an {@link Ai} is given, into a state
+	 * that can be advanced quickly. Mr X is put on mrXLocation, which can be a guess if the board hides him.
+	 * @param board the position to copy
+	 * @param mrXLocation where Mr X is
+	 * @return a state with board's players, tickets, travel log and players left to move this round
+	 */
+	@Nonnull public GameState resume(Board board, int mrXLocation){
+		Objects.requireNonNull(board);
+		Player mrX = null;
+		List<Player> detectives = new ArrayList<>();
+		for(Piece p : board.getPlayers()){
+			TicketBoard ticketBoard = board.getPlayerTickets(p).orElseThrow();
+			var tickets = new EnumMap<Ticket, Integer>(Ticket.class);
+			for(Ticket t : TICKETS)
+				tickets.put(t, ticketBoard.getCount(t));
+			if(p.isMrX())
+				mrX = new Player(p, ImmutableMap.copyOf(tickets), mrXLocation);
+			else
+				detectives.add(new Player(p, ImmutableMap.copyOf(tickets),
+						board.getDetectiveLocation((Detective)p).orElseThrow()));
+		}
+		if(mrX == null || !enforceRules(board.getSetup(), mrX, ImmutableList.copyOf(detectives)))
+			throw new IllegalArgumentException();
+		//Whoever has a move available is still to move; a finished game is treated as Mr X's turn
+		int remaining = 0;
+		for(Move m : board.getAvailableMoves()){
+			for(int i = 0; i < detectives.size(); i++){
+				if(detectives.get(i).piece().equals(m.commencedBy()))
+					remaining |= 1 << (i + 1);
+			}
+			if(m.commencedBy().isMrX())
+				remaining |= MRX_BIT;
+		}
+		ImmutableList<LogEntry> log = board.getMrXTravelLog();
+		return create(board.getSetup(), mrX, ImmutableList.copyOf(detectives),
+				log.toArray(new LogEntry[0]), remaining == 0 ? MRX_BIT : remaining);
+	}
+
+	private static GameState create(GameSetup setup, Player mrX, ImmutableList<Player> detectives,
+									LogEntry[] log, int remaining){
+		Game game = new Game(setup, mrX, detectives);
+		int[] locations = new int[game.pieces.length];
+		int[] tickets = new int[game.pieces.length * TICKET_TYPES];
+		long[] occupied = new long[(game.graph.nodeBound() + 63) >>> 6];
+		locations[MRX] = mrX.location();
+		for(int i = 0; i < detectives.size(); i++){
+			locations[i + 1] = detectives.get(i).location();
+			occupied = setOccupied(occupied, detectives.get(i).location());
+		}
+		for(int i = 0; i < game.pieces.length; i++){
+			Player p = i == MRX ? mrX : detectives.get(i - 1);
+			for(Ticket t : TICKETS)
+				tickets[i * TICKET_TYPES + t.ordinal()] = p.tickets().getOrDefault(t, 0);
+		}
+		return new CompactGameState(game, locations, tickets, occupied, remaining, log, log.length);
+	}
+}
@@ -0,0 +1,206 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * A flattened, read-only copy of a game graph for move generation.
+ * Each node's neighbours are held in an int array, with a matching bitmask per edge of the
+ * {@link Transport}s that run along it, so generating moves never has to go through the
+ * graph's hash lookups.
+ * <br>
+ * For each ticket, the nodes a player holding it can reach from each node are also kept, both as an int array
+ * and as a bitset, so per-ticket lookups don't have to go back through the transports either.
+ * <br>
+ * Use {@link #of(ImmutableValueGraph)} rather than compiling the same graph more than once.
+ */
+public final class CompiledGraph {
+
+	private static final int[] NO_NEIGHBOURS = new int[0];
+	private static final byte[] NO_TRANSPORTS = new byte[0];
+	private static final Transport[] TRANSPORTS = Transport.values();
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	//Keyed on the graph's identity; hashing an ImmutableValueGraph walks every edge
+	private static final LoadingCache<ImmutableValueGraph<Integer, ImmutableSet<Transport>>, CompiledGraph> cache =
+			CacheBuilder.newBuilder().weakKeys().build(CacheLoader.from(CompiledGraph::new));
+
+	private final int[][] neighbours;
+	private final byte[][] transports;
+	private final int nodeCount;
+	//Indexed [ticket.ordinal()][u]
+	private final int[][][] ticketNeighbours;
+	private final long[][][] ticketMasks;
+	private final long[] emptyMask;
+
+	private CompiledGraph(ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph){
+		int maxNode = 0;
+		for(int u : graph.nodes())
+			maxNode = Integer.max(maxNode, u);
+		this.neighbours = new int[maxNode + 1][];
+		this.transports = new byte[maxNode + 1][];
+		this.nodeCount = graph.nodes().size();
+		for(int u : graph.nodes()){
+			var adjacent = graph.adjacentNodes(u);
+			int[] vs = new int[adjacent.size()];
+			byte[] ts = new byte[adjacent.size()];
+			int i = 0;
+			for(int v : adjacent){
+				vs[i] = v;
+				for(Transport t : graph.edgeValueOrDefault(u, v, ImmutableSet.of()))
+					ts[i] |= transportBit(t);
+				i++;
+			}
+			neighbours[u] = vs;
+			transports[u] = ts;
+		}
+		this.emptyMask = new long[(maxNode + 64) >>> 6];
+		this.ticketNeighbours = new int[TICKETS.length][maxNode + 1][];
+		this.ticketMasks = new long[TICKETS.length][maxNode + 1][];
+		for(Ticket t : TICKETS){
+			for(int u = 0; u <= maxNode; u++){
+				int[] vs = neighbours(u);
+				byte[] ts = transports(u);
+				int count = 0;
+				for(int i = 0; i < vs.length; i++){
+					if(reaches(ts[i], t))
+						count++;
+				}
+				int[] reachable = new int[count];
+				long[] mask = new long[emptyMask.length];
+				count = 0;
+				for(int i = 0; i < vs.length; i++){
+					if(reaches(ts[i], t)){
+						reachable[count++] = vs[i];
+						mask[vs[i] >>> 6] |= 1L << vs[i];
+					}
+				}
+				ticketNeighbours[t.ordinal()][u] = reachable;
+				ticketMasks[t.ordinal()][u] = mask;
+			}
+		}
+	}
+
+	//Secret tickets work on any edge, double tickets are only ever used for two single moves
+	private static boolean reaches(int transportMask, Ticket ticket){
+		if(ticket == Ticket.SECRET)
+			return transportMask != 0;
+		return ticket != Ticket.DOUBLE && accepts(transportMask, ticket);
+	}
+
+	/**
+	 * @param graph the graph to compile
+	 * @return the compiled form of graph, shared with anyone else who has compiled the same graph
+	 */
+	@Nonnull public static CompiledGraph of(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph){
+		return cache.getUnchecked(graph);
+	}
+
+	/**
+	 * @param t a transport
+	 * @return the bit used for t in the transport masks
+	 */
+	public static int transportBit(Transport t){
+		return 1 << t.ordinal();
+	}
+
+	/**
+	 * @param transportMask a mask of transports for an edge
+	 * @param ticket a ticket
+	 * @return whether any transport in the mask can be used with ticket
+	 */
+	public static boolean accepts(int transportMask, Ticket ticket){
+		for(Transport t : TRANSPORTS){
+			if((transportMask & transportBit(t)) != 0 && t.requiredTicket() == ticket)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return how many nodes are in the graph
+	 */
+	public int nodeCount(){ return nodeCount; }
+
+	/**
+	 * @return one more than the largest node in the graph, for sizing arrays indexed by node
+	 */
+	public int nodeBound(){ return neighbours.length; }
+
+	/**
+	 * @param u a node
+	 * @return the nodes adjacent to u, empty if u is not in the graph. Must not be modified.
+	 */
+	@Nonnull public int[] neighbours(int u){
+		if(u < 0 || u >= neighbours.length || neighbours[u] == null)
+			return NO_NEIGHBOURS;
+		return neighbours[u];
+	}
+
+	/**
+	 * @param u a node
+	 * @return transport masks for u's edges, where the i-th mask belongs to the edge to
+	 * neighbours(u)[i]. Must not be modified.
+	 */
+	@Nonnull public byte[] transports(int u){
+		if(u < 0 || u >= transports.length || transports[u] == null)
+			return NO_TRANSPORTS;
+		return transports[u];
+	}
+
+	/**
+	 * @param u a node
+	 * @param ticket a ticket
+	 * @return the nodes reachable from u in one move with ticket, empty if u is not in the graph.
+	 * A secret ticket reaches every neighbour, a double ticket none. Must not be modified.
+	 */
+	@Nonnull public int[] neighbours(int u, @Nonnull Ticket ticket){
+		if(u < 0 || u >= neighbours.length)
+			return NO_NEIGHBOURS;
+		return ticketNeighbours[ticket.ordinal()][u];
+	}
+
+	/**
+	 * @param u a node
+	 * @param ticket a ticket
+	 * @return the same nodes as {@link #neighbours(int, Ticket)}, as a bitset where node v is bit v % 64 of
+	 * word v / 64. Must not be modified.
+	 */
+	@Nonnull public long[] neighbourMask(int u, @Nonnull Ticket ticket){
+		if(u < 0 || u >= neighbours.length)
+			return emptyMask;
+		return ticketMasks[ticket.ordinal()][u];
+	}
+
+	/**
+	 * @param u a node
+	 * @param ticket a ticket
+	 * @param v another node
+	 * @return whether v can be reached from u in one move with ticket
+	 */
+	public boolean connects(int u, @Nonnull Ticket ticket, int v){
+		return v >= 0 && v < neighbours.length && (neighbourMask(u, ticket)[v >>> 6] & (1L << v)) != 0;
+	}
+
+	/**
+	 * @param u a node
+	 * @param v another node
+	 * @return the transport mask of the edge between u and v, 0 if there is no edge
+	 */
+	public int transports(int u, int v){
+		int[] vs = neighbours(u);
+		for(int i = 0; i < vs.length; i++){
+			if(vs[i] == v)
+				return transports[u][i];
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,109 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.DETECTIVE_LOCATIONS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.MRX_LOCATIONS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Plays random games through {@link MyGameStateFactory} and {@link CompactGameStateFactory} side by
+ * side, checking after every move that both report the same position, moves and winner.
+ * <br>
+ * Detectives are given at most one ticket of each kind, so that games often reach the states where
+ * some of them can no longer move, which is where the two engines are most likely to disagree.
+ */
+public class CompactGameStateDifferentialTest {
+
+	private static final int GAMES = 2000;
+
+	private static ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph;
+
+	@BeforeClass public static void setUp() {
+		try {
+			graph = readGraph(Resources.toString(Resources.getResource("graph.txt"),
+					StandardCharsets.UTF_8));
+		} catch (IOException e) { throw new RuntimeException("Unable to read game graph", e); }
+	}
+
+	private static ImmutableMap<Ticket, Integer> detectiveTickets(Random random) {
+		return ImmutableMap.of(
+				Ticket.TAXI, random.nextInt(2),
+				Ticket.BUS, random.nextInt(2),
+				Ticket.UNDERGROUND, random.nextInt(2),
+				Ticket.DOUBLE, 0,
+				Ticket.SECRET, 0);
+	}
+
+	private static void assertSameState(GameState expected, GameState actual) {
+		assertThat(actual.getPlayers()).isEqualTo(expected.getPlayers());
+		assertThat(actual.getMrXTravelLog()).isEqualTo(expected.getMrXTravelLog());
+		for (Piece p : expected.getPlayers()) {
+			if (p.isDetective())
+				assertThat(actual.getDetectiveLocation((Detective) p))
+						.isEqualTo(expected.getDetectiveLocation((Detective) p));
+			for (Ticket t : Ticket.values())
+				assertThat(actual.getPlayerTickets(p).orElseThrow().getCount(t))
+						.as("%s tickets for %s", t, p)
+						.isEqualTo(expected.getPlayerTickets(p).orElseThrow().getCount(t));
+		}
+		assertThat(actual.getWinner()).isEqualTo(expected.getWinner());
+		assertThat(actual.getAvailableMoves()).isEqualTo(expected.getAvailableMoves());
+	}
+
+	@Test public void testRandomGamesMatchMyGameState() {
+		Random random = new Random(42);
+		for (int game = 0; game < GAMES; game++) {
+			List<Integer> starts = new ArrayList<>(DETECTIVE_LOCATIONS);
+			Collections.shuffle(starts, random);
+			Player mrX = new Player(MRX, defaultMrXTickets(),
+					MRX_LOCATIONS.get(random.nextInt(MRX_LOCATIONS.size())));
+			List<Player> detectives = new ArrayList<>();
+			for (Detective d : Detective.values()) {
+				int location = starts.remove(0);
+				if (location == mrX.location()) location = starts.remove(0);
+				detectives.add(new Player(d, detectiveTickets(random), location));
+			}
+			GameSetup setup = new GameSetup(graph, STANDARD24ROUNDS);
+			GameState expected = new MyGameStateFactory()
+					.build(setup, mrX, ImmutableList.copyOf(detectives));
+			GameState actual = new CompactGameStateFactory()
+					.build(setup, mrX, ImmutableList.copyOf(detectives));
+			assertSameState(expected, actual);
+			while (expected.getWinner().isEmpty()) {
+				//Both sets hold the same moves, but not necessarily in the same order
+				List<Move> moves = new ArrayList<>(expected.getAvailableMoves());
+				moves.sort(Comparator.comparing(Move::toString));
+				Move move = moves.get(random.nextInt(moves.size()));
+				expected = expected.advance(move);
+				actual = actual.advance(move);
+				assertSameState(expected, actual);
+			}
+		}
+	}
+
+}